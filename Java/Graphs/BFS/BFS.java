@@ -33,10 +33,17 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Iterator;
 import pkg.graphs.Graph;
+import pkg.graphs.GraphView;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.CompressedGraph;
+import pkg.graphs.OffHeapGraph;
+import pkg.graphs.SearchWorkspace;
 
 public class BFS
 {
   Graph g;
+  // Visited flags and queue, reused by every traversal
+  SearchWorkspace ws;
 
   BFS()
   {
@@ -63,23 +70,41 @@ public class BFS
 
   public void traverse()
   {
-    boolean[] visited = new boolean[g.getVertices()];
-    LinkedList<Integer> vQueue = new LinkedList<Integer>();
-    vQueue.add(0);
-    visited[0] = true;
+    // Traverse the CSR view of the graph, which keeps neighbours in flat
+    // int arrays
+    traverse(g.freeze());
+  }
+
+  // Runs over any GraphView, e.g. the Graph, its CSR view or an OffHeapGraph.
+  // The queue is a plain array, as every vertex is enqueued at most once.
+  // Both it and the visited flags come from a workspace kept between calls,
+  // whose flags are reset by starting a new epoch instead of clearing V
+  // entries.
+  public void traverse(GraphView g)
+  {
+    NeighborCursor children = g.outCursor();
+
+    if (ws == null || ws.capacity() < g.getVertices())
+      ws = new SearchWorkspace(g.getVertices());
+    ws.reset();
+    int[] vQueue = ws.queue();
+    int head = 0, tail = 0;
+    vQueue[tail++] = 0;
+    ws.settle(0);
 
     System.out.print("BFS: ");
-    while(!vQueue.isEmpty())
+    while(head < tail)
     {
-      int cur = vQueue.poll();
+      int cur = vQueue[head++];
       System.out.print(cur+1 + " ");
-      LinkedList<Integer> children = g.getAdjList().get(cur);
-      for (Integer child : children)
+      children.reset(cur);
+      while (children.next())
       {
-        if (visited[child] != true)
+        int child = children.target();
+        if (!ws.isSettled(child))
         {
-          visited[child] = true;
-          vQueue.add(child);
+          ws.settle(child);
+          vQueue[tail++] = child;
         }
       }
     }
@@ -92,6 +117,18 @@ public class BFS
     System.out.println("Given Gaph: ");
     System.out.println(obj.g);
     obj.traverse();
+
+    // The same traversal over a copy of the graph stored off the Java heap
+    try (OffHeapGraph offHeap = OffHeapGraph.copyOf(obj.g))
+    {
+      System.out.print("Off heap ");
+      obj.traverse(offHeap);
+    }
+
+    // And over a copy with gap encoded adjascency lists
+    CompressedGraph compressed = CompressedGraph.copyOf(obj.g);
+    System.out.print("Compressed ");
+    obj.traverse(compressed);
   }
 
 }
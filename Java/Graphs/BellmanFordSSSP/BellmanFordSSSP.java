@@ -25,27 +25,52 @@
 
 // Time Complexity: O(V.E) as relaxation happens v-1 times for each edge.
 //                  i.e. greater than Dijkstras but can work with -ve edges.
+//                  The passes stop as soon as one of them changes nothing,
+//                  which on most graphs is after a few passes.
+//
+// SPFA (Shortest Path Faster Algorithm) is the queue based variant: only the
+// out edges of vertices whose distance changed are relaxed again. It is still
+// O(V.E) in the worst case, but on sparse graphs it usually relaxes each edge
+// a few times in total rather than once per pass.
 
 import java.util.*;
+import pkg.graphs.CSRGraph;
 import pkg.graphs.Graph;
-import pkg.graphs.Edge;
+import pkg.graphs.EdgeArray;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.SearchWorkspace;
 
 public class BellmanFordSSSP
 {
 
   Graph g;
-  int[] dist;
-  int[] prev;
+  // Distances and predecessors of the last run, kept between runs and reset
+  // lazily, so a run only writes the entries of the vertices it reaches
+  SearchWorkspace ws;
+  // Edges on the shortest path of every vertex reached by spfa(). Only read
+  // for vertices reached by the current run, so never reset.
+  int[] hops;
+  // Negative cycle found by the last spfa(), null if there is none
+  ArrayList<Integer> cycle;
+  // Edges relaxed by the last run
+  long relaxations;
+  // Edges of g, reused across calls
+  EdgeArray edges;
   final int INF = Integer.MAX_VALUE/2;
 
   BellmanFordSSSP()
   {
     g = new Graph(5, true, true);
-    dist = new int[5];
-    prev = new int[5];
+    ws = new SearchWorkspace(5);
     constructGraph();
   }
 
+  BellmanFordSSSP(Graph g)
+  {
+    this.g = g;
+    ws = new SearchWorkspace(g.getVertices());
+  }
+
   public void constructGraph()
   {
     g.addEdge(0, 1, -1);
@@ -61,54 +86,175 @@ public class BellmanFordSSSP
   public boolean bellmanFord(int src)
   {
     int V = g.getVertices();
-    Arrays.fill(dist, INF);
-    Arrays.fill(prev, -1);
+    if (ws.capacity() < V)
+      ws = new SearchWorkspace(V);
+    ws.reset(INF);
 
-    dist[src] = 0;
-    for(int i=0; i<V; i++)
+    ws.set(src, 0, -1);
+    // The edge list is read once into primitive arrays and reused by every
+    // pass, instead of creating E Edge objects per pass.
+    edges = g.getEdgeArray(edges);
+    int E = edges.size();
+    int[] from = edges.getSources();
+    int[] to = edges.getDestinations();
+    int[] wt = edges.getWeights();
+    relaxations = 0;
+    boolean changed = true;
+    for(int i=0; i<V && changed; i++)
     {
-      ArrayList<Edge> edgesList = g.getEdgeList();
-      for (Edge e : edgesList)
+      // Once a pass changes nothing, no later pass can
+      changed = false;
+      relaxations += E;
+      for (int e = 0; e < E; e++)
       {
-        if (dist[e.getSource()] == INF)
+        int d = ws.distance(from[e]);
+        if (d == INF)
         continue;
 
-        if(dist[e.getDestination()] > dist[e.getSource()] + e.getWeight())
+        if(ws.distance(to[e]) > d + wt[e])
         {
-          dist[e.getDestination()] = dist[e.getSource()] + e.getWeight();
-          prev[e.getDestination()] = e.getSource();
+          ws.set(to[e], d + wt[e], from[e]);
+          changed = true;
         }
       }
     }
+    // Converged before the last pass, so there is no negative cycle
+    if (!changed)
+      return false;
 
     // Run the algorithm a second time to detect any negative cycle.
     // A negative cycle is encountered if we find a better path than the optimal
     // solution found after V-1 iterations.
     // This loops propagates the effect of the -ve cycle throughout the graph.
     boolean hasNegativeCycle = false;
-    for(int i=0; i<V; i++)
+    changed = true;
+    for(int i=0; i<V && changed; i++)
     {
-      for(Edge e : g.getEdgeList())
+      changed = false;
+      for (int e = 0; e < E; e++)
       {
-        if(dist[e.getDestination()] > dist[e.getSource()] + e.getWeight())
+        if(ws.distance(to[e]) > ws.distance(from[e]) + wt[e])
         {
-          dist[e.getDestination()] = -INF;
+          ws.setDistance(to[e], -INF);
           hasNegativeCycle = true;
+          changed = true;
         }
       }
     }
     return hasNegativeCycle;
   }
 
+  // Queue based Bellman-Ford. A vertex is queued when its distance improves
+  // (unless it is queued already) and only its out edges are relaxed when it
+  // is polled, so the search stops as soon as no distance changes.
+  // A negative cycle would make it run forever, so every vertex also counts
+  // the edges on its current path: a path of V edges repeats a vertex, and
+  // walking back V predecessors from there lands on a negative cycle. The
+  // search then stops and the cycle is kept for negativeCycle(); distances
+  // are left as they were at that point.
+  // Returns whether a negative cycle is reachable from src.
+  public boolean spfa(int src)
+  {
+    int V = g.getVertices();
+    if (ws.capacity() < V)
+      ws = new SearchWorkspace(V);
+    ws.reset(INF);
+    if (hops == null || hops.length < V)
+      hops = new int[V];
+    cycle = null;
+    relaxations = 0;
+    // Out edges as flat CSR arrays, cached by the Graph until it changes
+    CSRGraph csr = g.freeze();
+    NeighborCursor children = csr.outCursor();
+
+    // Circular FIFO queue. The settled flag marks queued vertices, so no
+    // vertex is in it twice and V slots are enough.
+    int[] queue = ws.queue();
+    int head = 0, size = 0;
+    ws.set(src, 0, -1);
+    hops[src] = 0;
+    queue[size++] = src;
+    ws.settle(src);
+
+    while (size > 0)
+    {
+      int u = queue[head];
+      head = head + 1 == V ? 0 : head + 1;
+      size--;
+      ws.unsettle(u);
+
+      int d = ws.distance(u);
+      children.reset(u);
+      while (children.next())
+      {
+        int v = children.target();
+        relaxations++;
+        if (ws.distance(v) <= d + children.weight())
+          continue;
+        ws.set(v, d + children.weight(), u);
+        hops[v] = hops[u] + 1;
+        if (hops[v] >= V && (cycle = findCycle(v)) != null)
+          return true;
+        if (!ws.isSettled(v))
+        {
+          ws.settle(v);
+          int tail = head + size;
+          queue[tail >= V ? tail - V : tail] = v;
+          size++;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Cycle of predecessors v leads back into, null if it leads to the source.
+  // Every cycle among the predecessors of a label correcting search is
+  // negative.
+  ArrayList<Integer> findCycle(int v)
+  {
+    int V = g.getVertices();
+    // Past the path into the cycle, which has fewer than V vertices
+    for (int i = 0; i < V && v != -1; i++)
+      v = ws.pred(v);
+    if (v == -1)
+      return null;
+
+    ArrayList<Integer> res = new ArrayList<>();
+    int cur = v;
+    do
+    {
+      res.add(cur);
+      cur = ws.pred(cur);
+    } while (cur != v);
+    res.add(v);
+    Collections.reverse(res);
+    return res;
+  }
+
+  // Vertices of the negative cycle found by the last spfa(), in the order of
+  // its edges and with the first vertex repeated at the end. null if there is
+  // none.
+  public ArrayList<Integer> negativeCycle()
+  {
+    return cycle;
+  }
+
+  // Distances from the source of the last run, INF if unreachable and -INF
+  // if reachable through a negative cycle
+  public int[] distances()
+  {
+    return ws.distances(g.getVertices());
+  }
+
   public ArrayList<Integer> shortestPath(int src, int dest)
   {
     ArrayList<Integer> path = new ArrayList<>();
     path.add(dest);
     int cur = dest;
-    while (prev[cur] != src)
+    while (ws.pred(cur) != src)
     {
-      path.add(prev[cur]);
-      cur = prev[cur];
+      path.add(ws.pred(cur));
+      cur = ws.pred(cur);
     }
     path.add(src);
     Collections.reverse(path);
@@ -121,7 +267,7 @@ public class BellmanFordSSSP
     System.out.println("Given Graph: " + obj.g);
     boolean hasNegativeCycle = obj.bellmanFord(0);
     System.out.println("Has Negative Cycle: " + hasNegativeCycle);
-    System.out.println("Distance from source: " + Arrays.toString(obj.dist));
+    System.out.println("Distance from source: " + Arrays.toString(obj.distances()));
 
     ArrayList<Integer> path1 = obj.shortestPath(0, 2);
     System.out.println("Shortest Path from 0 to 2: "
@@ -132,6 +278,47 @@ public class BellmanFordSSSP
     ArrayList<Integer> path3 = obj.shortestPath(0, 4);
     System.out.println("Shortest Path from 0 to 4: "
                         + Arrays.toString(path3.toArray()));
+
+    long passEdges = obj.relaxations;
+    obj.spfa(0);
+    System.out.println("SPFA Distance from source: " + Arrays.toString(obj.distances())
+                        + ", " + obj.relaxations + " relaxations instead of "
+                        + passEdges);
+
+    // 2 -> 3 -> 2 costs 5 - 8
+    obj.g.addEdge(2, 3, -8);
+    System.out.println("After adding edge (2, 3, -8): Has Negative Cycle: "
+                        + obj.spfa(0) + ", cycle " + obj.negativeCycle());
+
+    sparse();
+  }
+
+  // Sparse random graph with many negative edges but no negative cycle: the
+  // weights are non negative ones shifted by vertex potentials p, as
+  // w(u, v) + p(u) - p(v), so every cycle keeps its non negative length
+  static void sparse()
+  {
+    int V = 100000, E = 400000;
+    Random rand = new Random(11);
+    int[] p = new int[V];
+    for (int v = 0; v < V; v++)
+      p[v] = rand.nextInt(1000);
+    Graph sparse = new Graph(V, true, true);
+    for (int e = 0; e < E; e++)
+    {
+      int u = rand.nextInt(V), v = rand.nextInt(V);
+      sparse.addEdge(u, v, rand.nextInt(100) + p[u] - p[v]);
+    }
+
+    BellmanFordSSSP obj = new BellmanFordSSSP(sparse);
+    obj.bellmanFord(0);
+    int[] passes = obj.distances();
+    long passEdges = obj.relaxations;
+    boolean cycle = obj.spfa(0);
+    System.out.println("Sparse graph of " + V + " vertices and " + E + " edges: "
+                        + "SPFA relaxed " + obj.relaxations + " edges, "
+                        + "Bellman-Ford passes " + passEdges + ", same distances "
+                        + (!cycle && Arrays.equals(passes, obj.distances())));
   }
 
 }
@@ -0,0 +1,109 @@
+// Building a Graph from many threads at once
+
+// Graph.addEdge isn't thread safe, so a Graph read from several sources in
+// parallel would need a lock around every edge. pkg.graphs.ConcurrentGraphBuilder
+// instead gives every producer thread a buffer of its own and merges them into
+// a CSRGraph in build(), sorting every vertex's neighbours so the result
+// doesn't depend on which thread added which edge first.
+
+// This demo fills the builder from several threads and checks build() against
+// the same edges added to a Graph one at a time and frozen. Each vertex's
+// neighbours are compared as a sorted list, because freeze() keeps them in
+// insertion order.
+
+// Time Complexity: O(V + E log(E / V)), spread over the producer threads and
+//                  the cores
+
+import java.util.Arrays;
+import java.util.Random;
+import pkg.graphs.CSRGraph;
+import pkg.graphs.ConcurrentGraphBuilder;
+import pkg.graphs.Graph;
+
+public class ConcurrentGraphBuilding
+{
+  static final int THREADS = 4;
+
+  // Every vertex's out edges as (target, weight) pairs, sorted
+  static long[] edgesOf(CSRGraph c, int v)
+  {
+    int[] off = c.getOffsets(), to = c.getTargets(), wt = c.getWeights();
+    long[] e = new long[off[v + 1] - off[v]];
+    for (int i = off[v]; i < off[v + 1]; i++)
+      e[i - off[v]] = ((long) to[i] << 32) | (wt == null ? 1 : wt[i]);
+    Arrays.sort(e);
+    return e;
+  }
+
+  static boolean same(CSRGraph a, CSRGraph b)
+  {
+    if (a.getVertices() != b.getVertices() || a.getEdges() != b.getEdges()
+        || a.getIsDirected() != b.getIsDirected())
+      return false;
+    for (int v = 0; v < a.getVertices(); v++)
+    {
+      if (!Arrays.equals(edgesOf(a, v), edgesOf(b, v)))
+        return false;
+    }
+    return true;
+  }
+
+  // Adds E random edges to a Graph and, split among THREADS threads, to a
+  // builder, and returns whether both give the same CSRGraph
+  static boolean check(int V, int E, boolean directed, long seed)
+    throws InterruptedException
+  {
+    Random rand = new Random(seed);
+    int[][] edges = new int[E][];
+    Graph g = new Graph(V, directed, true);
+    for (int i = 0; i < E; i++)
+    {
+      edges[i] = new int[] { rand.nextInt(V), rand.nextInt(V), 1 + rand.nextInt(100) };
+      g.addEdge(edges[i][0], edges[i][1], edges[i][2]);
+    }
+
+    ConcurrentGraphBuilder builder = new ConcurrentGraphBuilder(V, directed, true);
+    Thread[] producers = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++)
+    {
+      final int first = t;
+      producers[t] = new Thread(() -> {
+        for (int i = first; i < E; i += THREADS)
+          builder.addEdge(edges[i][0], edges[i][1], edges[i][2]);
+      });
+      producers[t].start();
+    }
+    for (Thread p : producers)
+      p.join();
+    return same(builder.build(), g.freeze());
+  }
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    ConcurrentGraphBuilder builder = new ConcurrentGraphBuilder(5, true, true);
+    Thread other = new Thread(() -> {
+      builder.addEdge(0, 1, 3);
+      builder.addEdge(1, 2, 5);
+    });
+    other.start();
+    builder.addEdge(0, 2, 9);
+    builder.addEdge(3, 4, 1);
+    other.join();
+    CSRGraph c = builder.build();
+    System.out.println("Built from two threads: " + c);
+
+    try
+    {
+      builder.addEdge(2, 3, 1);
+    }
+    catch (IllegalStateException e)
+    {
+      System.out.println("Adding after build(): " + e.getMessage());
+    }
+
+    System.out.println("Directed, " + THREADS + " threads, same as freeze(): "
+                       + check(1000, 20000, true, 1));
+    System.out.println("Undirected, " + THREADS + " threads, same as freeze(): "
+                       + check(1000, 20000, false, 2));
+  }
+}
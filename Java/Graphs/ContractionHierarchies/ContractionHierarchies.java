@@ -0,0 +1,160 @@
+// Contraction Hierarchies for repeated Shortest Path queries
+
+// When many shortest path queries are asked on a graph that rarely changes,
+// it pays to preprocess it once so that every query is much cheaper than a
+// Dijkstra search.
+
+// Preprocessing contracts the vertices one at a time in order of importance.
+// Contracting v removes it, adding a shortcut edge u -> w for every pair of
+// neighbours whose only shortest path runs through v. Every shortest path can
+// then be found going up in the contraction order from the source and up
+// from the target, so a query is a bidirectional Dijkstra that only follows
+// edges to more important vertices.
+
+// See pkg.graphs.ContractionHierarchy for the details.
+
+// Time Complexity: Preprocessing takes a few seconds for graphs with millions
+//                  of vertices (road networks), after which a query settles
+//                  only hundreds of vertices instead of a large part of the
+//                  graph.
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import pkg.graphs.ContractionHierarchy;
+import pkg.graphs.Graph;
+import pkg.graphs.IndexedDaryHeap;
+import pkg.graphs.NeighborCursor;
+
+public class ContractionHierarchies
+{
+  Graph g;
+  public static int INF = Integer.MAX_VALUE;
+
+  ContractionHierarchies()
+  {
+    g = new Graph(9, false, true);
+    constructGraph();
+  }
+
+  public void constructGraph()
+  {
+    g.addEdge(0, 1, 4);
+    g.addEdge(0, 7, 8);
+    g.addEdge(1, 2, 8);
+    g.addEdge(1, 7, 11);
+    g.addEdge(2, 3, 7);
+    g.addEdge(2, 5, 4);
+    g.addEdge(2, 8, 2);
+    g.addEdge(3, 4, 9);
+    g.addEdge(3, 5, 14);
+    g.addEdge(4, 5, 10);
+    g.addEdge(5, 6, 2);
+    g.addEdge(6, 7, 1);
+    g.addEdge(6, 8, 6);
+    g.addEdge(7, 8, 7);
+  }
+
+  // Plain Dijkstra to check the answers against, returns the number of
+  // vertices settled
+  static int dijkstras(Graph g, int src, int[] distance, IndexedDaryHeap heap)
+  {
+    Arrays.fill(distance, INF);
+    distance[src] = 0;
+    heap.insert(src, 0);
+    NeighborCursor children = g.outCursor();
+    int settled = 0;
+    while (!heap.isEmpty())
+    {
+      int top = heap.poll();
+      settled++;
+      children.reset(top);
+      while (children.next())
+      {
+        int nDist = distance[top] + children.weight();
+        if (nDist < distance[children.target()])
+        {
+          distance[children.target()] = nDist;
+          heap.insertOrDecrease(children.target(), nDist);
+        }
+      }
+    }
+    return settled;
+  }
+
+  public static void main(String[] args)
+  {
+    ContractionHierarchies obj = new ContractionHierarchies();
+    System.out.println("Given Graph: " + obj.g);
+
+    ContractionHierarchy ch = ContractionHierarchy.build(obj.g);
+    System.out.println("Contraction order: " + Arrays.toString(ch.getRank()));
+    System.out.println("Shortcuts: " + ch.getShortcutCount());
+    ContractionHierarchy.Query query = ch.newQuery();
+    System.out.println("Distance from 0 to 4: " + query.distance(0, 4));
+    System.out.println("Path from 0 to 4 : " + Arrays.toString(query.path()));
+
+    // A grid shaped road network, checked against Dijkstra
+    int side = 100;
+    Graph grid = new Graph(side * side, true, true);
+    Random rand = new Random(42);
+    for (int r = 0; r < side; r++)
+    {
+      for (int c = 0; c < side; c++)
+      {
+        int v = r * side + c;
+        if (c + 1 < side)
+        {
+          grid.addEdge(v, v + 1, 1 + rand.nextInt(14));
+          grid.addEdge(v + 1, v, 1 + rand.nextInt(14));
+        }
+        if (r + 1 < side)
+        {
+          grid.addEdge(v, v + side, 1 + rand.nextInt(14));
+          grid.addEdge(v + side, v, 1 + rand.nextInt(14));
+        }
+      }
+    }
+    ch = ContractionHierarchy.build(grid);
+
+    // Saved and loaded back, as it would be on the next start
+    try
+    {
+      File file = File.createTempFile("grid", ".ch");
+      file.deleteOnExit();
+      ch.save(file.getPath());
+      ch = ContractionHierarchy.load(file.getPath());
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not use a hierarchy file: " + e);
+    }
+
+    query = ch.newQuery();
+    int V = grid.getVertices();
+    int[] distance = new int[V];
+    IndexedDaryHeap heap = new IndexedDaryHeap(V);
+    int queries = 0, mismatches = 0;
+    long chSettled = 0, dijkstraSettled = 0;
+    for (int i = 0; i < 20; i++)
+    {
+      int src = rand.nextInt(V);
+      int settled = dijkstras(grid, src, distance, heap);
+      for (int j = 0; j < 50; j++)
+      {
+        int dest = rand.nextInt(V);
+        if (query.distance(src, dest) != distance[dest])
+          mismatches++;
+        queries++;
+        chSettled += query.getSettled();
+        dijkstraSettled += settled;
+      }
+    }
+    System.out.println("Grid " + side + "x" + side + ": " + ch.getShortcutCount()
+                       + " shortcuts, " + queries + " queries, "
+                       + mismatches + " differ from Dijkstra");
+    System.out.println("Settled per query: " + chSettled / queries
+                       + " (Dijkstra " + dijkstraSettled / queries + ")");
+  }
+}
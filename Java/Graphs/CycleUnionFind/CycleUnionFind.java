@@ -16,7 +16,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import pkg.graphs.Graph;
-import pkg.graphs.Edge;
+import pkg.graphs.EdgeArray;
 
 public class CycleUnionFind
 {
@@ -57,11 +57,11 @@ public class CycleUnionFind
     int[] parent = new int[g.getVertices()];
     Arrays.fill(parent, -1);
 
-    ArrayList<Edge> edgeList = g.getEdgeList();
-    for (Edge e : edgeList)
+    EdgeArray edges = g.getEdgeArray(null);
+    for (int e = 0; e < edges.size(); e++)
     {
-      int src = e.getSource();
-      int dest = e.getDestination();
+      int src = edges.getSource(e);
+      int dest = edges.getDestination(e);
       int x = find (src, parent);
       int y = find (dest, parent);
 
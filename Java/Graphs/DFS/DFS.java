@@ -30,9 +30,14 @@
 //                   as there are fewer edges than nodes generally
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Iterator;
 import pkg.graphs.Graph;
+import pkg.graphs.CSRGraph;
+import pkg.graphs.GraphView;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.OffHeapGraph;
 
 public class DFS
 {
@@ -63,16 +68,26 @@ public class DFS
 
   public void traverse_iter()
   {
+    traverse_iter(g.freeze());
+  }
+
+  // Runs over any GraphView, e.g. the Graph, its CSR view or an OffHeapGraph
+  public void traverse_iter(GraphView g)
+  {
+    NeighborCursor children = g.outCursor();
+
     boolean[] visited = new boolean[g.getVertices()];
-    LinkedList<Integer> vStack = new LinkedList<Integer>();
+    // Grown as needed, a vertex is pushed at most once per incoming edge
+    int[] vStack = new int[16];
+    int top = 0;
     System.out.print("Iterative BFS: ");
 
-    vStack.add(0);
+    vStack[top++] = 0;
 
-    while(!vStack.isEmpty())
+    while(top > 0)
     {
       // Pop top of Stack
-      int cur = vStack.pop();
+      int cur = vStack[--top];
       // If not visited then visit
       if(visited[cur] != true)
       {
@@ -81,11 +96,16 @@ public class DFS
       }
       // If children of popped element are not visited,
       // then visit them recursively
-      LinkedList<Integer> children = g.getAdjList().get(cur);
-      for (Integer child : children)
+      children.reset(cur);
+      while (children.next())
       {
+        int child = children.target();
         if (visited[child] != true)
-          vStack.push(child);
+        {
+          if (top == vStack.length)
+            vStack = Arrays.copyOf(vStack, 2 * top);
+          vStack[top++] = child;
+        }
       }
     }
     System.out.println();
@@ -97,11 +117,12 @@ public class DFS
     System.out.print(cur+1 + " ");
     visited[cur] = true;
 
-    LinkedList<Integer> children = g.getAdjList().get(cur);
-    for (Integer child : children)
+    CSRGraph csr = g.freeze();
+    int[] targets = csr.getTargets();
+    for (int i = csr.getOffsets()[cur]; i < csr.getOffsets()[cur + 1]; i++)
     {
-      if (visited[child] != true)
-        traverse_rec_util(child, visited);
+      if (visited[targets[i]] != true)
+        traverse_rec_util(targets[i], visited);
     }
   }
 
@@ -121,6 +142,13 @@ public class DFS
     System.out.println(obj.g);
     obj.traverse_iter();
     obj.traverse_rec();
+
+    // The same traversal over a copy of the graph stored off the Java heap
+    try (OffHeapGraph offHeap = OffHeapGraph.copyOf(obj.g))
+    {
+      System.out.print("Off heap ");
+      obj.traverse_iter(offHeap);
+    }
   }
 
 }
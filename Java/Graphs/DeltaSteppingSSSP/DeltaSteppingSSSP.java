@@ -0,0 +1,375 @@
+// Delta Stepping, parallel Single Source Shortest Path
+
+// Dijkstra settles one vertex at a time, so a single query can only use one
+// core. Delta stepping relaxes many vertices at once: vertices are kept in
+// buckets of tentative distance of width delta (bucket i holds distances
+// i*delta .. (i+1)*delta - 1) and a whole bucket is processed in parallel.
+
+// Edges are light (weight <= delta) or heavy (weight > delta).
+// For the smallest non empty bucket:
+// 1) Relax the light edges of all its vertices in parallel. Vertices whose
+//    distance drops into the same bucket are processed again, until the
+//    bucket stays empty.
+// 2) Relax the heavy edges of all vertices removed from the bucket, once.
+//    They can't lead back into the bucket.
+// Relaxations from different threads race on the same vertices, so the
+// distances are an AtomicIntegerArray updated with a compare-and-set min.
+
+// The result is the same as Dijkstra's. With delta = 1 it behaves like
+// Dijkstra (one distance at a time), with delta = infinity like Bellman
+// Ford (everything at once, with many more relaxations). A delta around the
+// largest weight divided by the average degree is usually a good trade off.
+
+// Time Complexity: O(V + E + D/delta * L) work for a largest distance D
+//                  and L light edge relaxation rounds per bucket, spread
+//                  over all cores of a ForkJoinPool.
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import pkg.graphs.CSRGraph;
+import pkg.graphs.Graph;
+import pkg.graphs.IndexedDaryHeap;
+import pkg.graphs.NeighborCursor;
+
+public class DeltaSteppingSSSP
+{
+  Graph g;
+  public static int INF = Integer.MAX_VALUE;
+  // Frontier slices up to this many vertices are relaxed by one thread
+  static final int GRAIN = 256;
+
+  ForkJoinPool pool;
+
+  public DeltaSteppingSSSP()
+  {
+    this(new Graph(9, false, true));
+    constructGraph();
+  }
+
+  public DeltaSteppingSSSP(Graph graph)
+  {
+    g = graph;
+    pool = ForkJoinPool.commonPool();
+  }
+
+  public void constructGraph()
+  {
+    g.addEdge(0, 1, 4);
+    g.addEdge(0, 7, 8);
+    g.addEdge(1, 2, 8);
+    g.addEdge(1, 7, 11);
+    g.addEdge(2, 3, 7);
+    g.addEdge(2, 5, 4);
+    g.addEdge(2, 8, 2);
+    g.addEdge(3, 4, 9);
+    g.addEdge(3, 5, 14);
+    g.addEdge(4, 5, 10);
+    g.addEdge(5, 6, 2);
+    g.addEdge(6, 7, 1);
+    g.addEdge(6, 8, 6);
+    g.addEdge(7, 8, 7);
+  }
+
+  // Largest weight over average out degree, at least 1
+  public static int defaultDelta(CSRGraph g)
+  {
+    int max = 1;
+    for (int w : g.getWeights())
+      max = Math.max(max, w);
+    long entries = g.getOffsets()[g.getVertices()];
+    double degree = Math.max(1.0, (double) entries / Math.max(1, g.getVertices()));
+    return Math.max(1, (int) (max / degree));
+  }
+
+  public int[] deltaStepping(int src)
+  {
+    CSRGraph csr = g.freeze();
+    return deltaStepping(csr, src, defaultDelta(csr));
+  }
+
+  // Edge weights must be non negative
+  public int[] deltaStepping(CSRGraph g, int src, int delta)
+  {
+    if (delta < 1)
+      throw new IllegalArgumentException("delta must be positive, not " + delta);
+    int V = g.getVertices();
+    int[] offsets = g.getOffsets(), targets = g.getTargets();
+    int[] weights = g.getWeights();
+    int maxWeight = 0;
+    for (int v = 0; v < V; v++)
+    {
+      for (int e = offsets[v]; e < offsets[v + 1]; e++)
+      {
+        if (weights[e] < 0)
+          throw new IllegalArgumentException("Negative edge weight " + weights[e]
+                                             + " on (" + v + ", " + targets[e] + ")");
+        maxWeight = Math.max(maxWeight, weights[e]);
+      }
+    }
+
+    AtomicIntegerArray distance = new AtomicIntegerArray(V);
+    for (int i = 0; i < V; i++)
+      distance.set(i, INF);
+    distance.set(src, 0);
+
+    // Relaxing from bucket b only reaches buckets b .. b + maxWeight/delta + 1,
+    // so the buckets are kept in a cyclic array of that many slots, bucket b
+    // in slot b % slots. A slot is null while its bucket is empty.
+    Buckets buckets = new Buckets(maxWeight / delta + 2);
+    buckets.add(0, src);
+    // Marks the vertices already taken in the current round or bucket
+    int[] roundMark = new int[V], bucketMark = new int[V];
+    Arrays.fill(roundMark, -1);
+    Arrays.fill(bucketMark, -1);
+    int round = 0;
+
+    for (int b = 0; buckets.queued > 0; b++)
+    {
+      if (buckets.get(b) == null)
+        continue;
+      // Vertices removed from bucket b, whose heavy edges are relaxed last
+      IntList removed = new IntList();
+      while (buckets.get(b) != null)
+      {
+        // Take the vertices still in bucket b, once each; entries of vertices
+        // which have moved to a lower distance since are stale
+        IntList items = buckets.take(b);
+        IntList frontier = new IntList();
+        for (int i = 0; i < items.size; i++)
+        {
+          int v = items.data[i];
+          if (roundMark[v] == round || distance.get(v) / delta != b)
+            continue;
+          roundMark[v] = round;
+          frontier.add(v);
+          if (bucketMark[v] != b)
+          {
+            bucketMark[v] = b;
+            removed.add(v);
+          }
+        }
+        round++;
+
+        IntList improved = pool.invoke(new Relax(g, distance, frontier.data, 0,
+                                                 frontier.size, delta, true));
+        for (int i = 0; i < improved.size; i++)
+          buckets.add(distance.get(improved.data[i]) / delta, improved.data[i]);
+      }
+
+      IntList improved = pool.invoke(new Relax(g, distance, removed.data, 0,
+                                               removed.size, delta, false));
+      for (int i = 0; i < improved.size; i++)
+        buckets.add(distance.get(improved.data[i]) / delta, improved.data[i]);
+    }
+
+    int[] res = new int[V];
+    for (int i = 0; i < V; i++)
+      res[i] = distance.get(i);
+    return res;
+  }
+
+  // Cyclic array of buckets, allocated only while they hold vertices
+  static class Buckets
+  {
+    final IntList[] slots;
+    // Entries in all buckets, stale ones included
+    long queued;
+
+    Buckets(int n)
+    {
+      slots = new IntList[n];
+    }
+
+    IntList get(int b)
+    {
+      return slots[b % slots.length];
+    }
+
+    void add(int b, int v)
+    {
+      int s = b % slots.length;
+      if (slots[s] == null)
+        slots[s] = new IntList();
+      slots[s].add(v);
+      queued++;
+    }
+
+    // Empties bucket b, returning its entries
+    IntList take(int b)
+    {
+      int s = b % slots.length;
+      IntList items = slots[s];
+      slots[s] = null;
+      queued -= items.size;
+      return items;
+    }
+  }
+
+  // Relaxes the light (or heavy) edges of frontier[from..to), splitting the
+  // range between the pool's threads. Returns the vertices whose distance
+  // improved, possibly more than once.
+  static class Relax extends RecursiveTask<IntList>
+  {
+    private static final long serialVersionUID = 1L;
+
+    final CSRGraph g;
+    final AtomicIntegerArray distance;
+    final int[] frontier;
+    final int from, to, delta;
+    final boolean light;
+
+    Relax(CSRGraph graph, AtomicIntegerArray dist, int[] f, int lo, int hi,
+          int d, boolean l)
+    {
+      g = graph;
+      distance = dist;
+      frontier = f;
+      from = lo;
+      to = hi;
+      delta = d;
+      light = l;
+    }
+
+    @Override
+    protected IntList compute()
+    {
+      if (to - from > GRAIN)
+      {
+        int mid = (from + to) >>> 1;
+        Relax left = new Relax(g, distance, frontier, from, mid, delta, light);
+        left.fork();
+        IntList res = new Relax(g, distance, frontier, mid, to, delta, light)
+                        .compute();
+        res.addAll(left.join());
+        return res;
+      }
+
+      int[] offsets = g.getOffsets(), targets = g.getTargets();
+      int[] weights = g.getWeights();
+      IntList res = new IntList();
+      for (int i = from; i < to; i++)
+      {
+        int v = frontier[i];
+        int dv = distance.get(v);
+        for (int e = offsets[v]; e < offsets[v + 1]; e++)
+        {
+          int w = weights[e];
+          if ((w <= delta) != light)
+            continue;
+          if (relax(distance, targets[e], dv + w))
+            res.add(targets[e]);
+        }
+      }
+      return res;
+    }
+  }
+
+  // Atomically lowers distance[v] to d if that is smaller
+  static boolean relax(AtomicIntegerArray distance, int v, int d)
+  {
+    while (true)
+    {
+      int cur = distance.get(v);
+      if (d >= cur)
+        return false;
+      if (distance.compareAndSet(v, cur, d))
+        return true;
+    }
+  }
+
+  // Growable int array
+  static class IntList
+  {
+    int[] data = new int[16];
+    int size;
+
+    void add(int x)
+    {
+      if (size == data.length)
+        data = Arrays.copyOf(data, 2 * size);
+      data[size++] = x;
+    }
+
+    void addAll(IntList l)
+    {
+      if (size + l.size > data.length)
+        data = Arrays.copyOf(data, Math.max(2 * data.length, size + l.size));
+      System.arraycopy(l.data, 0, data, size, l.size);
+      size += l.size;
+    }
+  }
+
+  // Sequential Dijkstra (as in DijkstrasSSSP with QueueType.DARY_HEAP), to
+  // check and time delta stepping against
+  public static int[] dijkstras(CSRGraph g, int src)
+  {
+    int V = g.getVertices();
+    int[] distance = new int[V];
+    Arrays.fill(distance, INF);
+    distance[src] = 0;
+    IndexedDaryHeap heap = new IndexedDaryHeap(V);
+    heap.insert(src, 0);
+    NeighborCursor children = g.outCursor();
+    while (!heap.isEmpty())
+    {
+      int top = heap.poll();
+      children.reset(top);
+      while (children.next())
+      {
+        int nDist = distance[top] + children.weight();
+        if (nDist < distance[children.target()])
+        {
+          distance[children.target()] = nDist;
+          heap.insertOrDecrease(children.target(), nDist);
+        }
+      }
+    }
+    return distance;
+  }
+
+  public static void main(String[] args)
+  {
+    DeltaSteppingSSSP obj = new DeltaSteppingSSSP();
+    System.out.println("Given Graph: " + obj.g);
+    int[] distance = obj.deltaStepping(0);
+    System.out.println("Distance Array: " + Arrays.toString(distance));
+    System.out.println("Same as Dijkstra: "
+                       + Arrays.equals(distance, dijkstras(obj.g.freeze(), 0)));
+
+    // Benchmark on a random graph
+    int V = 200000, E = 2000000;
+    Random rand = new Random(1);
+    int[] src = new int[E], dest = new int[E], wt = new int[E];
+    for (int i = 0; i < E; i++)
+    {
+      src[i] = rand.nextInt(V);
+      dest[i] = rand.nextInt(V);
+      wt[i] = 1 + rand.nextInt(100);
+    }
+    Graph big = new Graph(V, true, true);
+    big.addEdges(src, dest, wt);
+    DeltaSteppingSSSP bench = new DeltaSteppingSSSP(big);
+    CSRGraph csr = big.freeze();
+    int delta = defaultDelta(csr);
+
+    int[] expected = null, actual = null;
+    long dijkstraTime = Long.MAX_VALUE, deltaTime = Long.MAX_VALUE;
+    for (int run = 0; run < 3; run++)
+    {
+      long start = System.nanoTime();
+      expected = dijkstras(csr, 0);
+      dijkstraTime = Math.min(dijkstraTime, System.nanoTime() - start);
+      start = System.nanoTime();
+      actual = bench.deltaStepping(csr, 0, delta);
+      deltaTime = Math.min(deltaTime, System.nanoTime() - start);
+    }
+    System.out.println("Random graph, " + V + " vertices, " + E + " edges, delta "
+                       + delta + ", " + bench.pool.getParallelism() + " threads:");
+    System.out.println("  Same as Dijkstra: " + Arrays.equals(expected, actual));
+    System.out.println("  Dijkstra: " + dijkstraTime / 1000000 + " ms, delta stepping: "
+                       + deltaTime / 1000000 + " ms");
+  }
+}
@@ -36,8 +36,11 @@ import java.util.LinkedList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.PriorityQueue;
-import java.util.HashMap;
+import pkg.graphs.BucketQueue;
 import pkg.graphs.Graph;
+import pkg.graphs.IndexedMinQueue;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.RadixHeap;
 import java.util.Collections;
 
 public class DijkstrasAlgorithm
@@ -87,6 +90,7 @@ public class DijkstrasAlgorithm
     PriorityQueue<NodeTuple> pq = new PriorityQueue<NodeTuple>(V);
 
     pq.add(new NodeTuple(src, 0));
+    NeighborCursor children = g.outCursor();
 
     while (!pq.isEmpty())
     {
@@ -101,13 +105,13 @@ public class DijkstrasAlgorithm
       if (distance[top.node] < top.distance)
         continue;
 
-      LinkedList<Integer> children = g.getAdjList().get(top.node);
-      HashMap<Integer, Integer> edgeWeight = g.getWtList().get(top.node);
-      for (Integer child : children)
+      children.reset(top.node);
+      while (children.next())
       {
+        int child = children.target();
         if (visited[child])
           continue;
-        int nDist = distance[top.node] + edgeWeight.get(child);
+        int nDist = distance[top.node] + children.weight();
         if (nDist < distance[child])
         {
           distance[child] = nDist;
@@ -116,6 +120,58 @@ public class DijkstrasAlgorithm
         }
       }
     }
+    printPath(src, dest, pred);
+    return distance;
+  }
+
+  // The same search with a queue supporting decrease-key, e.g. Dial's
+  // buckets (BucketQueue) or a RadixHeap for small integer weights, or
+  // IndexedMinQueue.forGraph(g) to pick one from the largest edge weight
+  public int[] dijkstras(int src, int dest, IndexedMinQueue pq)
+  {
+    int V = g.getVertices();
+    int[] distance = new int[V];
+    int[] pred = new int[V];
+    boolean[] visited = new boolean[V];
+
+    Arrays.fill(distance, INF);
+    Arrays.fill(pred, -1);
+
+    distance[src] = 0;
+
+    pq.clear();
+    pq.insertOrDecrease(src, 0);
+    NeighborCursor children = g.outCursor();
+
+    while (!pq.isEmpty())
+    {
+      int top = pq.poll();
+      visited[top] = true;
+
+      if (top == dest)
+        break;
+
+      children.reset(top);
+      while (children.next())
+      {
+        int child = children.target();
+        if (visited[child])
+          continue;
+        int nDist = distance[top] + children.weight();
+        if (nDist < distance[child])
+        {
+          distance[child] = nDist;
+          pred[child] = top;
+          pq.insertOrDecrease(child, nDist);
+        }
+      }
+    }
+    printPath(src, dest, pred);
+    return distance;
+  }
+
+  public void printPath(int src, int dest, int[] pred)
+  {
     ArrayList<Integer> path = new ArrayList<Integer>();
 
     int last_i = dest;
@@ -129,7 +185,6 @@ public class DijkstrasAlgorithm
     Collections.reverse(path);
     System.out.println("Path from " +  src + " to " + dest + " : "
                         + Arrays.toString(path.toArray()));
-    return distance;
   }
 
   public int maxAt(int[] arr)
@@ -168,5 +223,14 @@ public class DijkstrasAlgorithm
     DijkstrasAlgorithm obj = new DijkstrasAlgorithm();
     System.out.println("Given Graph: " + obj.g);
     System.out.println("Distance Array: " + Arrays.toString(obj.dijkstras(0, 4)));
+
+    // Weights are at most 14, small enough for Dial's buckets
+    int V = obj.g.getVertices();
+    System.out.println("Distance Array (Dial): "
+                        + Arrays.toString(obj.dijkstras(0, 4, new BucketQueue(V, 14))));
+    System.out.println("Distance Array (Radix Heap): "
+                        + Arrays.toString(obj.dijkstras(0, 4, new RadixHeap(V))));
+    System.out.println("Distance Array (Auto): "
+                        + Arrays.toString(obj.dijkstras(0, 4, IndexedMinQueue.forGraph(obj.g))));
   }
 }
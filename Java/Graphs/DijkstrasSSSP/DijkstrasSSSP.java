@@ -31,13 +31,35 @@
 //                  poll() operation which takes O(logV) time.
 //                  So overall time complexity is O(E+V)*O(LogV) which is
 //                  O((E+V)*LogV) = O(ELogV)
+//                  With the indexed d-ary heap (QueueType.DARY_HEAP) the heap
+//                  holds at most V vertices and decrease-key costs
+//                  O(log_d V), so it is O(V d log_d V + E log_d V) without
+//                  any allocation per edge.
+//                  With small integer weights up to C, Dial's buckets
+//                  (QueueType.DIAL) take O(E + V*C) and a radix heap
+//                  (QueueType.RADIX_HEAP) O(E + V log C).
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.PriorityQueue;
-import java.util.HashMap;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+import java.io.File;
+import java.io.IOException;
 import pkg.graphs.Graph;
+import pkg.graphs.GraphFile;
+import pkg.graphs.GraphView;
+import pkg.graphs.BucketQueue;
+import pkg.graphs.IndexedDaryHeap;
+import pkg.graphs.IndexedMinQueue;
+import pkg.graphs.Landmarks;
+import pkg.graphs.MappedGraph;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.OffHeapGraph;
+import pkg.graphs.RadixHeap;
+import pkg.graphs.SearchWorkspace;
+import pkg.graphs.ShortestPathTreeCache;
 import java.util.Collections;
 
 public class DijkstrasSSSP
@@ -45,6 +67,39 @@ public class DijkstrasSSSP
   Graph g;
   public static int INF = Integer.MAX_VALUE;
 
+  // Priority queue used to pick the closest vertex not yet in the SPT
+  public enum QueueType
+  {
+    // java.util.PriorityQueue of NodeTuples, with lazy deletion
+    PRIORITY_QUEUE,
+    // IndexedDaryHeap of vertex ids, with decrease-key
+    DARY_HEAP,
+    // Dial's buckets (BucketQueue), for small non-negative weights
+    DIAL,
+    // RadixHeap, for non-negative weights
+    RADIX_HEAP,
+    // DIAL, RADIX_HEAP or DARY_HEAP, picked from the largest edge weight
+    AUTO
+  }
+
+  QueueType queueType = QueueType.DARY_HEAP;
+  // Distances, predecessors, settled flags and heap of the last search, and
+  // of the backward search of bidirectional(). They are reused by every
+  // search and reset lazily, so a search that stops early costs O(vertices
+  // it reaches) instead of O(V).
+  SearchWorkspace ws, backWs;
+  // Queue of the last DIAL, RADIX_HEAP or AUTO search and what it was made
+  // for, so that queries on an unchanged graph neither rescan its edges for
+  // the largest weight nor allocate a queue of size V
+  IndexedMinQueue queue;
+  GraphView queueGraph;
+  long queueVersion;
+  QueueType queueMadeFor;
+  // Vertices settled by the last search
+  int settled;
+  // Whether searches print the path they found
+  boolean printPaths = true;
+
   class NodeTuple implements Comparable<NodeTuple>
   {
     int node, distance;
@@ -72,64 +127,329 @@ public class DijkstrasSSSP
     constructGraph();
   }
 
+  public void setQueueType(QueueType q)
+  {
+    queueType = q;
+  }
+
+  // A workspace of at least V vertices, reset for a new search
+  static SearchWorkspace workspace(SearchWorkspace w, int V)
+  {
+    if (w == null || w.capacity() < V)
+      w = new SearchWorkspace(V);
+    w.reset();
+    return w;
+  }
+
   public int[] dijkstras(int src, int dest)
   {
-    int V = g.getVertices();
-    int[] distance = new int[V];
-    int[] pred = new int[V];
-    boolean[] visited = new boolean[V];
+    return dijkstras(g, src, dest);
+  }
+
+  // Runs over any GraphView, e.g. the Graph itself, its CSR snapshot, a
+  // memory mapped graph file or an OffHeapGraph
+  public int[] dijkstras(GraphView g, int src, int dest)
+  {
+    search(g, src, dest);
+    printPath(src, dest);
+    return ws.distances(g.getVertices());
+  }
+
+  // Distance from src to dest, INF if dest isn't reachable. The search stops
+  // at dest and nothing of size V is filled or copied, so a local query costs
+  // O(settled vertices). Distances and predecessors of the vertices it
+  // reached are left in getWorkspace().
+  public int distance(GraphView g, int src, int dest)
+  {
+    search(g, src, dest);
+    return ws.distance(dest);
+  }
+
+  public SearchWorkspace getWorkspace()
+  {
+    return ws;
+  }
 
-    Arrays.fill(distance, INF);
-    Arrays.fill(pred, -1);
+  void search(GraphView g, int src, int dest)
+  {
+    ws = workspace(ws, g.getVertices());
+    ws.set(src, 0, -1);
+    settled = 0;
 
-    distance[src] = 0;
+    switch (queueType)
+    {
+      case PRIORITY_QUEUE:
+        searchPriorityQueue(g, src, dest, ws);
+        break;
+      default:
+        searchIndexed(g, src, dest, ws, queueFor(g));
+        break;
+    }
+  }
 
-    PriorityQueue<NodeTuple> pq = new PriorityQueue<NodeTuple>(V);
+  // Lazy deletion: a vertex is queued again every time its distance improves
+  // and stale entries are skipped when polled, so the queue holds O(E)
+  // objects
+  void searchPriorityQueue(GraphView g, int src, int dest, SearchWorkspace w)
+  {
+    PriorityQueue<NodeTuple> pq = new PriorityQueue<NodeTuple>();
 
     pq.add(new NodeTuple(src, 0));
+    NeighborCursor children = g.outCursor();
 
     while (!pq.isEmpty())
     {
       NodeTuple top = pq.poll();
-      visited[top.node] = true;
+      if (!w.isSettled(top.node))
+        settled++;
+      w.settle(top.node);
 
       if (top.node == dest)
         break;
 
       // This operation is to ignore the decrease-Key operations
       // by ignoring the element whose min distance has already been found.
-      if (distance[top.node] < top.distance)
+      if (w.distance(top.node) < top.distance)
         continue;
 
-      LinkedList<Integer> children = g.getAdjList().get(top.node);
-      HashMap<Integer, Integer> edgeWeight = g.getWtList().get(top.node);
-      for (Integer child : children)
+      children.reset(top.node);
+      while (children.next())
+      {
+        int child = children.target();
+        if (w.isSettled(child))
+          continue;
+        int nDist = w.distance(top.node) + children.weight();
+        if (nDist < w.distance(child))
+        {
+          w.set(child, nDist, top.node);
+          pq.add(new NodeTuple(child, nDist));
+        }
+      }
+    }
+  }
+
+  IndexedMinQueue queueFor(GraphView g)
+  {
+    if (queueType == QueueType.DARY_HEAP)
+      return ws.heap();
+
+    // Graph is the only mutable GraphView, the others never change
+    long version = g instanceof Graph ? ((Graph) g).getVersion() : 0;
+    if (queue != null && queueGraph == g && queueVersion == version
+        && queueMadeFor == queueType)
+      return queue;
+
+    int V = g.getVertices();
+    switch (queueType)
+    {
+      case DIAL:
+        queue = new BucketQueue(V, IndexedMinQueue.maxWeight(g));
+        break;
+      case RADIX_HEAP:
+        queue = new RadixHeap(V);
+        break;
+      default:
+        queue = IndexedMinQueue.forGraph(g);
+        break;
+    }
+    queueGraph = g;
+    queueVersion = version;
+    queueMadeFor = queueType;
+    return queue;
+  }
+
+  // True decrease-key: every vertex is queued at most once, so the queue
+  // never holds more than V entries and relaxing an edge allocates nothing
+  void searchIndexed(GraphView g, int src, int dest, SearchWorkspace w,
+                     IndexedMinQueue queue)
+  {
+    queue.insertOrDecrease(src, 0);
+    NeighborCursor children = g.outCursor();
+
+    while (!queue.isEmpty())
+    {
+      int top = queue.poll();
+      w.settle(top);
+      settled++;
+
+      if (top == dest)
+        break;
+
+      int topDist = w.distance(top);
+      children.reset(top);
+      while (children.next())
+      {
+        int child = children.target();
+        if (w.isSettled(child))
+          continue;
+        int nDist = topDist + children.weight();
+        if (nDist < w.distance(child))
+        {
+          w.set(child, nDist, top);
+          queue.insertOrDecrease(child, nDist);
+        }
+      }
+    }
+    // A search stopped at dest leaves vertices queued. The queue is reused
+    // by the next search, whatever its type.
+    queue.clear();
+  }
+
+  // Point to point query searching from both ends at once: forward from src
+  // along out edges and backward from dest along in edges, each with its own
+  // workspace, always advancing the side whose closest vertex is nearer.
+  // mu is the length of the best src-dest path seen so far, through a vertex
+  // reached by both searches. Once the two heap minimums add up to at least
+  // mu no shorter path can be left, so both searches stop about halfway,
+  // settling far fewer vertices than a search from src alone.
+  // Prints the path and returns the distance from src to dest, INF if dest
+  // isn't reachable.
+  public int bidirectional(GraphView g, int src, int dest)
+  {
+    int V = g.getVertices();
+    // The backward workspace's pred is succ, the next vertex towards dest
+    ws = workspace(ws, V);
+    backWs = workspace(backWs, V);
+    IndexedDaryHeap heap = ws.heap(), backHeap = backWs.heap();
+    NeighborCursor out = g.outCursor(), in = g.inCursor();
+
+    ws.set(src, 0, -1);
+    backWs.set(dest, 0, -1);
+    heap.insert(src, 0);
+    backHeap.insert(dest, 0);
+    long mu = src == dest ? 0 : INF;
+    int meet = src == dest ? src : -1;
+    settled = 0;
+
+    while (!heap.isEmpty() && !backHeap.isEmpty())
+    {
+      if ((long) heap.peekKey() + backHeap.peekKey() >= mu)
+        break;
+
+      boolean forward = heap.peekKey() <= backHeap.peekKey();
+      IndexedDaryHeap q = forward ? heap : backHeap;
+      NeighborCursor children = forward ? out : in;
+      SearchWorkspace w = forward ? ws : backWs, other = forward ? backWs : ws;
+
+      int top = q.poll();
+      w.settle(top);
+      settled++;
+
+      int topDist = w.distance(top);
+      children.reset(top);
+      while (children.next())
       {
-        if (visited[child])
+        int child = children.target();
+        if (w.isSettled(child))
           continue;
-        int nDist = distance[top.node] + edgeWeight.get(child);
-        if (nDist < distance[child])
+        int nDist = topDist + children.weight();
+        if (nDist < w.distance(child))
+        {
+          w.set(child, nDist, top);
+          q.insertOrDecrease(child, nDist);
+        }
+        // A path through child joins the two searches
+        if (other.isReached(child)
+            && (long) w.distance(child) + other.distance(child) < mu)
+        {
+          mu = (long) w.distance(child) + other.distance(child);
+          meet = child;
+        }
+      }
+    }
+    heap.clear();
+    backHeap.clear();
+
+    if (meet == -1)
+    {
+      if (printPaths)
+        System.out.println("No path from " + src + " to " + dest);
+      return INF;
+    }
+    if (!printPaths)
+      return (int) mu;
+    ArrayList<Integer> path = new ArrayList<Integer>();
+    for (int v = meet; v != -1; v = ws.pred(v))
+      path.add(v);
+    Collections.reverse(path);
+    for (int v = backWs.pred(meet); v != -1; v = backWs.pred(v))
+      path.add(v);
+    System.out.println("Path from " +  src + " to " + dest + " : "
+                        + Arrays.toString(path.toArray()));
+    return (int) mu;
+  }
+
+  // A*: Dijkstra with the heap ordered by distance[v] + h(v), where h(v) is
+  // a lower bound on the distance from v to dest (an admissible heuristic),
+  // e.g. the straight line distance on a map, or Landmarks.heuristic(dest).
+  // Vertices leading towards dest are settled first, so the search reaches
+  // dest settling far fewer vertices. With h(v) = 0 it is plain Dijkstra.
+  // A vertex whose distance still improves after being settled (possible if
+  // h isn't consistent) is queued again, so any admissible h gives the
+  // shortest path.
+  // Prints the path and returns the distance from src to dest, INF if dest
+  // isn't reachable.
+  public int aStar(GraphView g, int src, int dest, IntUnaryOperator h)
+  {
+    ws = workspace(ws, g.getVertices());
+    IndexedDaryHeap heap = ws.heap();
+    NeighborCursor children = g.outCursor();
+
+    ws.set(src, 0, -1);
+    heap.insert(src, h.applyAsInt(src));
+    settled = 0;
+
+    while (!heap.isEmpty())
+    {
+      int top = heap.poll();
+      settled++;
+
+      if (top == dest)
+        break;
+
+      int topDist = ws.distance(top);
+      children.reset(top);
+      while (children.next())
+      {
+        int child = children.target();
+        int nDist = topDist + children.weight();
+        if (nDist < ws.distance(child))
         {
-          distance[child] = nDist;
-          pred[child] = top.node;
-          pq.add(new NodeTuple(child, distance[child]));
+          ws.set(child, nDist, top);
+          heap.insertOrDecrease(child, nDist + h.applyAsInt(child));
         }
       }
     }
+    heap.clear();
+
+    if (!ws.isReached(dest))
+    {
+      if (printPaths)
+        System.out.println("No path from " + src + " to " + dest);
+      return INF;
+    }
+    printPath(src, dest);
+    return ws.distance(dest);
+  }
+
+  // Path to dest found by the last search
+  public void printPath(int src, int dest)
+  {
+    if (!printPaths)
+      return;
     ArrayList<Integer> path = new ArrayList<Integer>();
 
     int last_i = dest;
-    while (pred[last_i] != -1)
+    while (ws.pred(last_i) != -1)
     {
       path.add(last_i);
-      last_i = pred[last_i];
+      last_i = ws.pred(last_i);
     }
     path.add(last_i);
 
     Collections.reverse(path);
     System.out.println("Path from " +  src + " to " + dest + " : "
                         + Arrays.toString(path.toArray()));
-    return distance;
   }
 
   public int maxAt(int[] arr)
@@ -163,10 +483,117 @@ public class DijkstrasSSSP
     g.addEdge(7, 8, 7);
   }
 
+  // Compares plain Dijkstra with A* and ALT between opposite corners of a
+  // grid shaped road network
+  static void goalDirected(DijkstrasSSSP obj)
+  {
+    int side = 100;
+    Graph grid = new Graph(side * side, false, true);
+    Random rand = new Random(42);
+    for (int r = 0; r < side; r++)
+    {
+      for (int c = 0; c < side; c++)
+      {
+        if (c + 1 < side)
+          grid.addEdge(r * side + c, r * side + c + 1, 1 + rand.nextInt(14));
+        if (r + 1 < side)
+          grid.addEdge(r * side + c, (r + 1) * side + c, 1 + rand.nextInt(14));
+      }
+    }
+    int src = 0, dest = side * side - 1;
+
+    // Every step costs at least 1, so the number of steps left is a bound
+    IntUnaryOperator manhattan = v -> (side - 1 - v / side) + (side - 1 - v % side);
+    Landmarks landmarks = new Landmarks(grid, 8);
+
+    obj.printPaths = false;
+    int plain = obj.distance(grid, src, dest);
+    int plainSettled = obj.settled;
+    int astar = obj.aStar(grid, src, dest, manhattan);
+    int astarSettled = obj.settled;
+    int alt = obj.aStar(grid, src, dest, landmarks.heuristic(dest));
+    int altSettled = obj.settled;
+    obj.printPaths = true;
+
+    System.out.println("Grid " + side + "x" + side + ", " + src + " to " + dest + ":");
+    System.out.println("  Dijkstra:       " + plain + ", settled " + plainSettled);
+    System.out.println("  A* (manhattan): " + astar + ", settled " + astarSettled);
+    System.out.println("  ALT (8 landmarks " + Arrays.toString(landmarks.getLandmarks())
+                       + "): " + alt + ", settled " + altSettled);
+  }
+
+  // Queries from a few hub sources, most of them answered by cached trees
+  static void treeCache(Graph g)
+  {
+    int V = g.getVertices();
+    // Room for the trees of 3 sources
+    ShortestPathTreeCache cache = new ShortestPathTreeCache(g, 3 * (8L * V + 64));
+    Random rand = new Random(7);
+    for (int q = 0; q < 1000; q++)
+    {
+      // Skewed towards the low numbered vertices
+      int src = (int) (V * Math.pow(rand.nextDouble(), 3));
+      cache.distance(src, rand.nextInt(V));
+    }
+    System.out.println(cache);
+    System.out.println("Path from 0 to 4 (cached): "
+                        + Arrays.toString(cache.get(0).path(4)));
+
+    // A shortcut makes every cached tree stale
+    g.addEdge(0, 4, 1);
+    System.out.println("After adding edge (0, 4): distance " + cache.distance(0, 4)
+                        + ", path " + Arrays.toString(cache.get(0).path(4))
+                        + ", invalidations " + cache.getInvalidations());
+  }
+
   public static void main(String[] args)
   {
     DijkstrasSSSP obj = new DijkstrasSSSP();
     System.out.println("Given Graph: " + obj.g);
     System.out.println("Distance Array: " + Arrays.toString(obj.dijkstras(0, 4)));
+
+    obj.setQueueType(QueueType.PRIORITY_QUEUE);
+    System.out.println("Distance Array (PriorityQueue): "
+                        + Arrays.toString(obj.dijkstras(0, 4)));
+    obj.setQueueType(QueueType.DIAL);
+    System.out.println("Distance Array (Dial): "
+                        + Arrays.toString(obj.dijkstras(0, 4)));
+    obj.setQueueType(QueueType.RADIX_HEAP);
+    System.out.println("Distance Array (Radix Heap): "
+                        + Arrays.toString(obj.dijkstras(0, 4)));
+    obj.setQueueType(QueueType.DARY_HEAP);
+
+    int unidirectional = obj.dijkstras(0, 4)[4];
+    int settledOneWay = obj.settled;
+    System.out.println("Bidirectional Distance: " + obj.bidirectional(obj.g, 0, 4)
+                        + " (unidirectional " + unidirectional + ")");
+    System.out.println("Settled " + obj.settled + " vertices instead of "
+                        + settledOneWay);
+
+    goalDirected(obj);
+
+    // Save the graph in the binary format and run over the mapped file
+    try
+    {
+      File file = File.createTempFile("dijkstras", ".graph");
+      file.deleteOnExit();
+      GraphFile.write(obj.g, file.getPath());
+      MappedGraph mapped = GraphFile.open(file.getPath());
+      System.out.println("Distance Array (memory mapped): "
+                          + Arrays.toString(obj.dijkstras(mapped, 0, 4)));
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not use a graph file: " + e);
+    }
+
+    // And over a copy stored off the Java heap
+    try (OffHeapGraph offHeap = OffHeapGraph.copyOf(obj.g))
+    {
+      System.out.println("Distance Array (off heap): "
+                          + Arrays.toString(obj.dijkstras(offHeap, 0, 4)));
+    }
+
+    treeCache(obj.g);
   }
 }
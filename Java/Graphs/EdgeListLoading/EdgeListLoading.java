@@ -0,0 +1,163 @@
+// Loading large Graphs from edge list files
+
+// Graphs with millions of edges are usually shared as text edge lists, e.g.
+// the SNAP datasets, the DIMACS shortest path challenge road networks and the
+// SuiteSparse Matrix Market collection. Reading them line by line into a
+// Graph creates a String per line and an object per edge.
+
+// pkg.graphs.EdgeListLoader memory maps the file instead and parses chunks
+// of it in parallel straight into a CSRGraph, in two passes: one counting
+// the degrees, one scattering the edges.
+
+// This demo writes the same Graph in all three formats, loads each and
+// checks it matches the Graph frozen into a CSRGraph. Each vertex's
+// neighbours are compared as a sorted list, because the loader sorts them and
+// freeze() keeps them in insertion order.
+
+// Time Complexity: O(V + E), spread over the cores
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import pkg.graphs.CSRGraph;
+import pkg.graphs.EdgeListLoader;
+import pkg.graphs.EdgeListLoader.Format;
+import pkg.graphs.Graph;
+
+public class EdgeListLoading
+{
+  Graph g, u;
+  static int[][] edges = { { 0, 1, 4 }, { 0, 7, 8 }, { 1, 2, 8 }, { 1, 7, 11 },
+                           { 2, 3, 7 }, { 2, 5, 4 }, { 2, 8, 2 }, { 3, 4, 9 },
+                           { 3, 5, 14 }, { 4, 5, 10 }, { 5, 6, 2 }, { 6, 7, 1 },
+                           { 6, 8, 6 }, { 7, 8, 7 } };
+
+  EdgeListLoading()
+  {
+    g = new Graph(9, true, true);
+    u = new Graph(9, false, true);
+    constructGraph();
+  }
+
+  public void constructGraph()
+  {
+    for (int[] e : edges)
+    {
+      g.addEdge(e[0], e[1], e[2]);
+      u.addEdge(e[0], e[1], e[2]);
+    }
+  }
+
+  static File write(String name, String text) throws IOException
+  {
+    File f = File.createTempFile("EdgeListLoading", name);
+    f.deleteOnExit();
+    Files.write(f.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+    return f;
+  }
+
+  // Every vertex's out edges as (target, weight) pairs, sorted
+  static long[] edgesOf(CSRGraph c, int v)
+  {
+    int[] off = c.getOffsets(), to = c.getTargets(), wt = c.getWeights();
+    long[] e = new long[off[v + 1] - off[v]];
+    for (int i = off[v]; i < off[v + 1]; i++)
+      e[i - off[v]] = ((long) to[i] << 32) | (wt == null ? 1 : wt[i]);
+    Arrays.sort(e);
+    return e;
+  }
+
+  static boolean same(CSRGraph a, CSRGraph b)
+  {
+    if (a.getVertices() != b.getVertices() || a.getEdges() != b.getEdges()
+        || a.getIsDirected() != b.getIsDirected())
+      return false;
+    for (int v = 0; v < a.getVertices(); v++)
+    {
+      if (!Arrays.equals(edgesOf(a, v), edgesOf(b, v)))
+        return false;
+    }
+    return true;
+  }
+
+  static String snap(String eol, String sep)
+  {
+    StringBuilder sb = new StringBuilder("# Demo graph" + eol + "# FromNodeId"
+                                         + sep + "ToNodeId" + eol);
+    for (int[] e : edges)
+      sb.append(e[0]).append(sep).append(e[1]).append(sep).append(e[2]).append(eol);
+    return sb.toString();
+  }
+
+  static String dimacs()
+  {
+    StringBuilder sb = new StringBuilder("c Demo graph\np sp 9 " + edges.length + "\n");
+    for (int[] e : edges)
+      sb.append("a ").append(e[0] + 1).append(' ').append(e[1] + 1)
+        .append(' ').append(e[2]).append('\n');
+    return sb.toString();
+  }
+
+  // Symmetric matrices only store the lower triangle (row >= column)
+  static String matrixMarket(boolean symmetric)
+  {
+    String[] values = { "%d", "%d.0", "%de0", "%d.000E+00", "%d0e-1" };
+    StringBuilder sb = new StringBuilder("%%MatrixMarket matrix coordinate real "
+                                         + (symmetric ? "symmetric" : "general")
+                                         + "\n% Demo graph\n9 9 " + edges.length + "\n");
+    for (int i = 0; i < edges.length; i++)
+    {
+      int[] e = edges[i];
+      int r = symmetric ? Math.max(e[0], e[1]) : e[0];
+      int c = symmetric ? Math.min(e[0], e[1]) : e[1];
+      sb.append(r + 1).append(' ').append(c + 1).append(' ')
+        .append(String.format(values[i % values.length], e[2])).append('\n');
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) throws IOException
+  {
+    EdgeListLoading obj = new EdgeListLoading();
+    System.out.println("Given Graph: " + obj.g);
+    CSRGraph directed = obj.g.freeze(), undirected = obj.u.freeze();
+
+    CSRGraph c = EdgeListLoader.load(write(".txt", snap("\n", " ")).getPath(),
+                                     Format.SNAP, true);
+    System.out.println("Loaded from SNAP: " + c);
+    System.out.println("SNAP same as freeze(): " + same(c, directed));
+
+    // Windows line breaks, tabs and no line break after the last edge
+    String text = snap("\r\n", "\t");
+    c = EdgeListLoader.load(write(".txt", text.substring(0, text.length() - 2))
+                            .getPath(), Format.SNAP, false);
+    System.out.println("Undirected SNAP (CRLF, tabs, no final newline) same as "
+                       + "freeze(): " + same(c, undirected));
+
+    c = EdgeListLoader.load(write(".gr", dimacs()).getPath(), Format.DIMACS, true);
+    System.out.println("DIMACS same as freeze(): " + same(c, directed));
+
+    c = EdgeListLoader.load(write(".mtx", matrixMarket(false)).getPath(),
+                            Format.MATRIX_MARKET, true);
+    System.out.println("Matrix Market general same as freeze(): "
+                       + same(c, directed));
+    c = EdgeListLoader.load(write(".mtx", matrixMarket(true)).getPath(),
+                            Format.MATRIX_MARKET, false);
+    System.out.println("Matrix Market symmetric same as undirected freeze(): "
+                       + same(c, undirected));
+
+    // An edge to a vertex the file doesn't have
+    try
+    {
+      EdgeListLoader.load(write(".gr", dimacs() + "a 3 12 5\n").getPath(),
+                          Format.DIMACS, true);
+      System.out.println("Out of range vertex accepted");
+    }
+    catch (IOException e)
+    {
+      System.out.println("Out of range vertex: " + e.getMessage());
+    }
+  }
+}
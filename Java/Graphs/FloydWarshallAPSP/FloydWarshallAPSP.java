@@ -93,7 +93,34 @@
 // adjacency matrix to store the new values and 3 nested for loops that run for
 // a total of v * v * v times.
 
+// For large V the 3 nested loops stream the whole matrix through the cache
+// once per k. floydWarshallBlocked() runs the same recurrence over one flat
+// row major array, tile by tile, with the independent tiles in parallel (see
+// BlockedFloydWarshall). It does the same O(V^3) work, but mostly out of the
+// cache and on all cores. Its inner loop is branch free by default, so the
+// JIT compiles it to SIMD instructions; -Dpkg.graphs.minplus=scalar or
+// BlockedFloydWarshall.setKernel() switches back to the plain loop.
+//
+// When even one V*V matrix doesn't fit in memory, floydWarshallMapped() runs
+// the blocked version over a MappedDistanceMatrix, a memory mapped file
+// stored tile by tile, holding only O(V * tile) entries on the heap.
+
+// Incremental updates:
+// When an edge (u, v) is inserted or its weight drops to w, decreaseEdge()
+// repairs the distances and predecessors in O(V^2) instead of running the
+// O(V^3) algorithm again. Every new shortest path uses the edge, i.e. is
+// i ~> u -> v ~> j, so
+//   D[i][j] = min(D[i][j], D[i][u] + w + D[v][j])
+// and only rows with D[i][u] + w < D[i][v] can change at all: otherwise
+// D[i][u] + w + D[v][j] >= D[i][v] + D[v][j] >= D[i][j]. Likewise only the
+// columns reachable from v are visited. Without a new negative cycle
+// neither row v nor column u change, so the update can run in place.
+
 import java.util.*;
+import java.io.File;
+import java.io.IOException;
+import pkg.graphs.BlockedFloydWarshall;
+import pkg.graphs.MappedDistanceMatrix;
 
 public class FloydWarshallAPSP
 {
@@ -112,6 +139,13 @@ public class FloydWarshallAPSP
     constructGraph();
   }
 
+  // Runs over the given adjacency matrix, INF where there is no edge
+  FloydWarshallAPSP(int[][] adj)
+  {
+    V = adj.length;
+    adjMatrix = adj;
+  }
+
   public void constructGraph()
   {
     /* Let us create the following weighted graph
@@ -138,11 +172,31 @@ public class FloydWarshallAPSP
   public int[][] floydWarshall()
   {
     int[][] pred = new int[V][V];
+    int[][] distance = distances(pred);
+
+    System.out.println("All Pair Shortest Distances (-: INF): ");
+    for (int i=0; i<V; i++)
+    {
+      for (int j=0; j<V; j++)
+        System.out.print((distance[i][j] == INF ? "-" : distance[i][j]) + " ");
+      System.out.println();
+    }
+
+    // If distance of any verex from itself
+    // becomes negative, then there is a negative
+    // weight cycle.
+    for (int i = 0; i < V; i++)
+      if (distance[i][i] < 0)
+        return null;
+    return pred;
+  }
+
+  // Returns the distances and fills pred
+  public int[][] distances(int[][] pred)
+  {
     int[][] distance = new int[V][V];
     for (int i = 0; i<V; i++)
     {
-      pred[i] = new int[V];
-      distance[i] = new int[V];
       for (int j = 0; j<V; j++)
       {
         distance[i][j] = adjMatrix[i][j];
@@ -173,22 +227,84 @@ public class FloydWarshallAPSP
         }
       }
     }
+    return distance;
+  }
 
-    System.out.println("All Pair Shortest Distances (-: INF): ");
-    for (int i=0; i<V; i++)
+  // Blocked Floyd-Warshall. Returns the distances as one row major array,
+  // distance[i*V + j], and fills pred in the same layout unless it is null.
+  // Check BlockedFloydWarshall.hasNegativeCycle() before using the paths.
+  public int[] floydWarshallBlocked(int[] pred)
+  {
+    int[] distance = new int[V * V];
+    for (int i = 0; i < V; i++)
     {
-      for (int j=0; j<V; j++)
-        System.out.print((distance[i][j] == INF ? "-" : distance[i][j]) + " ");
-      System.out.println();
+      for (int j = 0; j < V; j++)
+      {
+        distance[i * V + j] = adjMatrix[i][j];
+        if (pred != null)
+          pred[i * V + j] = (i != j && adjMatrix[i][j] != INF) ? i : -1;
+      }
     }
+    BlockedFloydWarshall.run(distance, pred, V);
+    return distance;
+  }
 
-    // If distance of any verex from itself
-    // becomes negative, then there is a negative
-    // weight cycle.
+  // Blocked Floyd-Warshall over a matrix in the given file, which is
+  // created or overwritten. The caller closes the returned matrix.
+  public MappedDistanceMatrix floydWarshallMapped(String file, boolean withPred)
+    throws IOException
+  {
+    MappedDistanceMatrix m = MappedDistanceMatrix.create(file, V, withPred);
     for (int i = 0; i < V; i++)
-      if (distance[i][i] < 0)
-        return null;
-    return pred;
+    {
+      for (int j = 0; j < V; j++)
+      {
+        if (adjMatrix[i][j] != INF)
+          m.setEdge(i, j, adjMatrix[i][j]);
+      }
+    }
+    m.floydWarshall();
+    return m;
+  }
+
+  // Inserts edge (u, v) with weight w, or lowers its weight to w, and updates
+  // the distances and predecessors of floydWarshall() / distances() to match.
+  // Returns false, leaving distance and pred as they were, if the edge closes
+  // a negative cycle; the edge is still recorded, so a full run will report
+  // the cycle.
+  public boolean decreaseEdge(int[][] distance, int[][] pred, int u, int v, int w)
+  {
+    adjMatrix[u][v] = Math.min(adjMatrix[u][v], w);
+    if (distance[v][u] != INF && distance[v][u] + w < 0)
+      return false;
+    if (w >= distance[u][v])
+      return true;
+
+    // Columns reachable from v, the only ones a path through (u, v) reaches
+    int[] cols = new int[V];
+    int n = 0;
+    for (int j = 0; j < V; j++)
+    {
+      if (distance[v][j] != INF)
+        cols[n++] = j;
+    }
+
+    for (int i = 0; i < V; i++)
+    {
+      int viaEdge = distance[i][u] == INF ? INF : distance[i][u] + w;
+      if (viaEdge >= distance[i][v])
+        continue;
+      for (int c = 0; c < n; c++)
+      {
+        int j = cols[c];
+        if (distance[i][j] > viaEdge + distance[v][j])
+        {
+          distance[i][j] = Math.max(viaEdge + distance[v][j], -INF);
+          pred[i][j] = j == v ? u : pred[v][j];
+        }
+      }
+    }
+    return true;
   }
 
   public ArrayList<Integer> shortestPath(int src, int dest, int[][] pred)
@@ -206,6 +322,165 @@ public class FloydWarshallAPSP
     return path;
   }
 
+  // Same, with the row major predecessors of floydWarshallBlocked()
+  public ArrayList<Integer> shortestPath(int src, int dest, int[] pred)
+  {
+    ArrayList<Integer> path = new ArrayList<Integer>();
+    path.add(dest);
+    int cur = dest;
+    while (pred[src * V + cur] != src)
+    {
+      path.add(pred[src * V + cur]);
+      cur = pred[src * V + cur];
+    }
+    path.add(src);
+    Collections.reverse(path);
+    return path;
+  }
+
+  // Random graph of v vertices with about 8 out edges per vertex, some of
+  // them negative but without negative cycles: weights are non negative ones
+  // shifted by vertex potentials
+  static int[][] randomGraph(int v, long seed)
+  {
+    Random rand = new Random(seed);
+    int[] h = new int[v];
+    for (int i = 0; i < v; i++)
+      h[i] = rand.nextInt(50);
+    int[][] adj = new int[v][v];
+    for (int i = 0; i < v; i++)
+    {
+      Arrays.fill(adj[i], Integer.MAX_VALUE / 2);
+      adj[i][i] = 0;
+    }
+    for (int e = 0; e < 8 * v; e++)
+    {
+      int i = rand.nextInt(v), j = rand.nextInt(v);
+      if (i != j)
+        adj[i][j] = Math.min(adj[i][j], rand.nextInt(100) + h[i] - h[j]);
+    }
+    return adj;
+  }
+
+  // Compares the 3 nested loops with the blocked version
+  static void blocked()
+  {
+    int v = 1000;
+    FloydWarshallAPSP obj = new FloydWarshallAPSP(randomGraph(v, 3));
+
+    long start = System.nanoTime();
+    int[][] pred = new int[v][v];
+    int[][] plain = obj.distances(pred);
+    long plainTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    int[] flatPred = new int[v * v];
+    int[] flat = obj.floydWarshallBlocked(flatPred);
+    long blockedTime = System.nanoTime() - start;
+
+    boolean same = !BlockedFloydWarshall.hasNegativeCycle(flat, v);
+    for (int i = 0; i < v && same; i++)
+    {
+      for (int j = 0; j < v && same; j++)
+        same = plain[i][j] == flat[i * v + j];
+    }
+    System.out.println("Blocked Floyd-Warshall, " + v + " vertices: same distances "
+                        + same + ", same path from 0 to " + (v - 1) + " "
+                        + obj.shortestPath(0, v - 1, pred).equals(obj.shortestPath(0, v - 1, flatPred)));
+
+    // The same with the other inner loop
+    BlockedFloydWarshall.Kernel kernel = BlockedFloydWarshall.getKernel();
+    BlockedFloydWarshall.Kernel other = kernel == BlockedFloydWarshall.Kernel.SCALAR
+      ? BlockedFloydWarshall.Kernel.BRANCH_FREE : BlockedFloydWarshall.Kernel.SCALAR;
+    BlockedFloydWarshall.setKernel(other);
+    start = System.nanoTime();
+    int[] otherFlat = obj.floydWarshallBlocked(new int[v * v]);
+    long otherTime = System.nanoTime() - start;
+    BlockedFloydWarshall.setKernel(kernel);
+
+    System.out.println("  same distances with the " + other + " kernel "
+                        + Arrays.equals(flat, otherFlat));
+    System.out.println("  3 nested loops: " + plainTime / 1000000 + " ms, blocked ("
+                        + kernel + "): " + blockedTime / 1000000 + " ms, blocked ("
+                        + other + "): " + otherTime / 1000000 + " ms");
+
+    // And out of core
+    try
+    {
+      File file = File.createTempFile("apsp", ".dmx");
+      file.deleteOnExit();
+      try (MappedDistanceMatrix m = obj.floydWarshallMapped(file.getPath(), true))
+      {
+        boolean sameMapped = true;
+        for (int i = 0; i < v && sameMapped; i++)
+        {
+          for (int j = 0; j < v && sameMapped; j++)
+            sameMapped = m.get(i, j) == flat[i * v + j];
+        }
+        System.out.println("  memory mapped (" + file.length() / 1024
+                            + " KB file): same distances " + sameMapped);
+      }
+      file.delete();
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not use a matrix file: " + e);
+    }
+  }
+
+  // Applies random edge decreases one at a time, and compares with running
+  // Floyd-Warshall again after each of them
+  static void incremental()
+  {
+    int v = 300, updates = 50;
+    FloydWarshallAPSP obj = new FloydWarshallAPSP(randomGraph(v, 5));
+    int[][] pred = new int[v][v];
+    int[][] distance = obj.distances(pred);
+    Random rand = new Random(7);
+    long incrementalTime = 0, fullTime = 0;
+    boolean same = true, validPaths = true;
+    int applied = 0;
+
+    for (int t = 0; t < updates; t++)
+    {
+      int a = rand.nextInt(v), b = rand.nextInt(v);
+      if (a == b || distance[a][b] == obj.INF)
+        continue;
+      // Shorter than the current path, but without a negative cycle
+      int w = distance[a][b] - 1 - rand.nextInt(20);
+      if (distance[b][a] != obj.INF && distance[b][a] + w < 0)
+        continue;
+
+      long start = System.nanoTime();
+      obj.decreaseEdge(distance, pred, a, b, w);
+      incrementalTime += System.nanoTime() - start;
+      applied++;
+
+      start = System.nanoTime();
+      int[][] fullPred = new int[v][v];
+      int[][] full = obj.distances(fullPred);
+      fullTime += System.nanoTime() - start;
+      for (int i = 0; i < v && same; i++)
+        same = Arrays.equals(distance[i], full[i]);
+
+      // The predecessors must give paths of the updated lengths
+      int src = rand.nextInt(v), dest = rand.nextInt(v);
+      if (src != dest && distance[src][dest] != obj.INF)
+      {
+        ArrayList<Integer> path = obj.shortestPath(src, dest, pred);
+        int length = 0;
+        for (int k = 1; k < path.size(); k++)
+          length += obj.adjMatrix[path.get(k - 1)][path.get(k)];
+        validPaths &= length == distance[src][dest];
+      }
+    }
+    System.out.println("Incremental Floyd-Warshall, " + v + " vertices, "
+                        + applied + " edge decreases: same distances " + same
+                        + ", valid paths " + validPaths);
+    System.out.println("  incremental: " + incrementalTime / 1000000
+                        + " ms, from scratch: " + fullTime / 1000000 + " ms");
+  }
+
   public static void main(String[] args)
   {
     FloydWarshallAPSP obj = new FloydWarshallAPSP(4);
@@ -220,5 +495,22 @@ public class FloydWarshallAPSP
       System.out.println(Arrays.toString(pred[i]));
     System.out.println("Shortest Path from 0 to 3: " +
                         obj.shortestPath(0, 3, pred));
+
+    // Adding edge 0 -> 2 of weight 2 makes 0 -> 2 -> 3 the shortest
+    int[][] distance = obj.distances(pred);
+    obj.decreaseEdge(distance, pred, 0, 2, 2);
+    System.out.println("After adding 0 -> 2 (2), distances from 0: "
+                        + Arrays.toString(distance[0]) + ", shortest path from 0 to 3: "
+                        + obj.shortestPath(0, 3, pred));
+    obj.constructGraph();
+
+    int[] flatPred = new int[4 * 4];
+    int[] flat = obj.floydWarshallBlocked(flatPred);
+    System.out.println("Blocked Distances: " + Arrays.toString(flat));
+    System.out.println("Blocked Shortest Path from 0 to 3: " +
+                        obj.shortestPath(0, 3, flatPred));
+
+    blocked();
+    incremental();
   }
 }
@@ -34,18 +34,29 @@
 //                  Bellman Ford is O(VE)
 //                  Dijkstra is O(VLogV).
 //                  So overall time complexity is O(V2log V + VE).
+//                  The V Dijkstra searches are independent and run on all
+//                  cores, so that phase takes O(V^2 log V / P) with P cores.
 
 // The time complexity of Johnson's algorithm becomes same as Floyd Warshell
 // when the graphs is complete (For a complete graph E = O(V2). But for sparse
 // graphs, the algorithm performs much better than Floyd Warshall.
-import java.util.ArrayList;
-import java.util.LinkedList;
+
+// The rows of the result are independent, so they can also be streamed to a
+// MappedDistanceMatrix as soon as they are found, for graphs whose V*V
+// matrix doesn't fit in memory.
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import pkg.graphs.CSRGraph;
 import pkg.graphs.Graph;
-import pkg.graphs.Edge;
+import pkg.graphs.EdgeArray;
+import pkg.graphs.IndexedDaryHeap;
+import pkg.graphs.MappedDistanceMatrix;
+import pkg.graphs.NeighborCursor;
 
 public class JohnsonsAPSP
 {
@@ -88,12 +99,49 @@ public class JohnsonsAPSP
     g.addEdge(3, 0,  6);
   }
 
+  // Fills distance with the shortest distances of the original graph, INF
+  // where there is no path
   public boolean johnsonsAlgorithm(int[][] distance)
+  {
+    int[] h = reweight();
+    if (h == null)
+      return false;
+
+    // Arrays.fill(distance, INF);
+
+    dijkstras(distance, h);
+
+    return true;
+  }
+
+  // Same, writing every row to out as soon as its Dijkstra search is done,
+  // so only one row per task is held in memory.
+  public boolean johnsonsAlgorithm(MappedDistanceMatrix out)
+  {
+    int[] h = reweight();
+    if (h == null)
+      return false;
+
+    CSRGraph csr = g.freeze();
+
+    forEachSource(csr, (w, i) ->
+    {
+      int[] row = w.row;
+      dijkstras(i, row, w);
+      undoReweighting(i, row, h);
+      out.setRow(i, row, null);
+    });
+    return true;
+  }
+
+  // Re-weights g to non negative weights with Bellman Ford from a new vertex
+  // and returns the potentials h[] used, null if there is a negative cycle
+  int[] reweight()
   {
     if (g == null)
     {
       System.out.println("Graph can't be empty");
-      return false;
+      return null;
     }
 
     int V = g.getVertices();
@@ -105,8 +153,7 @@ public class JohnsonsAPSP
     for (int i=0; i<V; i++)
       augmentedGraph.addEdge(V, i, 1);
     // Add edges from original ggraph to augmented graph
-    for (Edge e: g.getEdgeList())
-      augmentedGraph.addEdge(e.getSource(), e.getDestination(), e.getWeight());
+    g.forEachEdge(augmentedGraph::addEdge);
 
     System.out.println("Augmented Graph: " + augmentedGraph);
     int[] dist = new int[V+1];
@@ -118,32 +165,22 @@ public class JohnsonsAPSP
     // This is true as any Negative Cycles can't contain the newly added vertex
     // as there is no edge coming into the new Vertex.
     if (noNegativeCycle == false)
-      return false;
+      return null;
 
 
     // Re-weigting of original graps is done based on the distances found by
     // Bellman Ford
 
-    ArrayList<HashMap<Integer, Integer>> wtList = g.getWtList();
-    // *or* Graph wtGraph = new Graph(V, g.getIsDirected(), g.getIsWeighted());
-    for (Edge e : g.getEdgeList())
-    {
-      int src  = e.getSource();
-      int dest = e.getDestination();
-      int wt   = e.getWeight();
-      wt = wt + dist[src] - dist[dest];
-      // *or* wtGraph.addEdge(src, dest, wt);
-      wtList.get(src).put(dest, wt);
-    }
-    // *or* g = wtGraph;
-
-    // Arrays.fill(distance, INF);
+    // The weights are index aligned with the adjascency lists, so the
+    // re-weighted graph is built edge by edge (parallel edges keep their own
+    // weight).
+    Graph wtGraph = new Graph(V, g.getIsDirected(), g.getIsWeighted());
+    g.forEachEdge((src, dest, wt) ->
+      wtGraph.addEdge(src, dest, wt + dist[src] - dist[dest]));
+    g = wtGraph;
 
     System.out.println("Re-weighted Graph: " + g);
-
-    dijkstras(distance);
-
-    return true;
+    return dist;
   }
 
   public boolean bellmanFord(Graph g, int s, int[] dist)
@@ -151,13 +188,18 @@ public class JohnsonsAPSP
     Arrays.fill(dist, INF);
     dist[s] = 0;
 
+    // Read the edges once into primitive arrays, every pass walks them
+    // without creating Edge objects
+    EdgeArray edges = g.getEdgeArray(null);
+    int E = edges.size();
+
     for (int i=0; i<g.getVertices(); i++)
     {
-      for(Edge e : g.getEdgeList())
+      for (int e = 0; e < E; e++)
       {
-        int src  = e.getSource();
-        int dest = e.getDestination();
-        int wt   = e.getWeight();
+        int src  = edges.getSource(e);
+        int dest = edges.getDestination(e);
+        int wt   = edges.getWeight(e);
 
         if (dist[src] == INF)
           continue;
@@ -170,11 +212,11 @@ public class JohnsonsAPSP
     // Now we need to relax the edges one more time to make sure there are no
     // neggative edges
     boolean noNegativeCycle = true;
-    for(Edge e : g.getEdgeList())
+    for (int e = 0; e < E; e++)
     {
-      int src  = e.getSource();
-      int dest = e.getDestination();
-      int wt   = e.getWeight();
+      int src  = edges.getSource(e);
+      int dest = edges.getDestination(e);
+      int wt   = edges.getWeight(e);
 
       if (dist[dest] > dist[src] + wt)
       {
@@ -185,79 +227,130 @@ public class JohnsonsAPSP
     return noNegativeCycle;
   }
 
-  class NodeTuple implements Comparable<NodeTuple>
+  // Scratch space of one task, reused for every source it runs
+  static class Workspace
   {
-    int node, distance;
+    final IndexedDaryHeap heap;
+    final boolean[] visited;
+    final NeighborCursor children;
+    // Distances of the current source, for callers without a matrix row
+    final int[] row;
 
-    NodeTuple(int n, int d)
+    Workspace(CSRGraph g)
     {
-      node = n;
-      distance = d;
+      heap = new IndexedDaryHeap(g.getVertices());
+      visited = new boolean[g.getVertices()];
+      children = g.outCursor();
+      row = new int[g.getVertices()];
     }
+  }
 
-    @Override
-    public int compareTo(NodeTuple t)
+  // Runs action for every source vertex of g in parallel on the common
+  // ForkJoinPool. There is one task per worker, each with its own Workspace
+  // (garbage once the call returns), and the tasks claim small ranges of
+  // sources from a shared counter until none are left. Searches from some
+  // sources cost far more than from others, so fixed slices would leave
+  // workers idle while one finishes an expensive slice; claiming about 8
+  // ranges per worker keeps them all busy to the end.
+  static void forEachSource(CSRGraph g, ObjIntConsumer<Workspace> action)
+  {
+    int V = g.getVertices();
+    int workers = Math.max(1, Math.min(V, ForkJoinPool.commonPool().getParallelism()));
+    int chunk = Math.max(1, V / (8 * workers));
+    AtomicInteger next = new AtomicInteger();
+    IntStream.range(0, workers).parallel().forEach(t ->
     {
-      if (this.distance < t.distance)
-        return -1;
-      else if (this.distance > t.distance)
-        return 1;
-      return 0;
-    }
+      Workspace w = new Workspace(g);
+      for (int from = next.getAndAdd(chunk); from < V; from = next.getAndAdd(chunk))
+      {
+        int to = (int) Math.min(V, (long) from + chunk);
+        for (int i = from; i < to; i++)
+          action.accept(w, i);
+      }
+    });
   }
 
+  // Distances of the graph as it is, i.e. of the re-weighted graph once
+  // reweight() has run
   public void dijkstras(int[][] distance)
   {
-    int V = g.getVertices();
-    boolean[] visited = new boolean[V];
-    // Arrays.fill(distance, INF);
+    dijkstras(distance, null);
+  }
 
-    PriorityQueue<NodeTuple> q = new PriorityQueue<>();
+  // Runs Dijkstra from every vertex of the re-weighted graph. The searches
+  // are independent, so they run in parallel on the common ForkJoinPool,
+  // every task with its own heap and scratch, each writing its own row of
+  // distance. The rows are turned back into distances of the original graph
+  // with the potentials h of reweight(), unless h is null.
+  public void dijkstras(int[][] distance, int[] h)
+  {
+    // Frozen once up front, the tasks only read the CSR arrays
+    CSRGraph csr = g.freeze();
 
-    for (int i=0; i<distance.length; i++)
+    forEachSource(csr, (w, i) ->
     {
-      Arrays.fill(visited, false);
-      distance[i][i]=0;
-      q.add(new NodeTuple(i, 0));
+      dijkstras(i, distance[i], w);
+      if (h != null)
+        undoReweighting(i, distance[i], h);
+    });
 
-      while (!q.isEmpty())
-      {
-        NodeTuple top = q.poll();
-        visited[top.node] = true;
+    for(int i=0; i<distance.length; i++)
+    System.out.println("Distance[" +i+ "]: " + Arrays.toString(distance[i]));
+  }
 
-        if (distance[i][top.node] < top.distance)
-          continue;
+  // Row src of the re-weighted graph's distances to the original graph's:
+  // d(src, j) = d'(src, j) - h[src] + h[j]
+  static void undoReweighting(int src, int[] row, int[] h)
+  {
+    for (int j = 0; j < row.length; j++)
+    {
+      if (row[j] != INF)
+        row[j] += h[j] - h[src];
+    }
+  }
+
+  // Single source Dijkstra from src, writing the distances into row
+  void dijkstras(int src, int[] row, Workspace w)
+  {
+    IndexedDaryHeap q = w.heap;
+    boolean[] visited = w.visited;
+    NeighborCursor children = w.children;
+    Arrays.fill(visited, false);
+    Arrays.fill(row, INF);
+    row[src] = 0;
+    q.insert(src, 0);
+
+    while (!q.isEmpty())
+    {
+      int top = q.poll();
+      visited[top] = true;
 
-        LinkedList<Integer> children = g.getAdjList().get(top.node);
-        HashMap<Integer, Integer> edgeWeight = g.getWtList().get(top.node);
-        for (Integer child : children)
+      children.reset(top);
+      while (children.next())
+      {
+        int child = children.target();
+        if (!visited[child])
         {
-          if (!visited[child])
+          int nDist = row[top] + children.weight();
+          if (nDist < row[child])
           {
-            int nDist = distance[i][top.node] + edgeWeight.get(child);
-            if (nDist < distance[i][child])
-            {
-              distance[i][child] = nDist;
-              q.add(new NodeTuple(child, nDist));
-            }
+            row[child] = nDist;
+            q.insertOrDecrease(child, nDist);
           }
         }
       }
     }
-    for(int i=0; i<distance.length; i++)
-    System.out.println("Distance[" +i+ "]: " + Arrays.toString(distance[i]));
   }
 
-
-
   public static void main(String[] args)
   {
+    int[][] distance = null;
     for (int x=4; x<6; x++)
     {
       System.out.println("*************************************");
       JohnsonsAPSP obj = new JohnsonsAPSP(x);
       System.out.println("Given Graph: " + obj.g);
-      int[][] distance = new int[obj.g.getVertices()][];
+      distance = new int[obj.g.getVertices()][];
       for (int i=0; i<obj.g.getVertices(); i++)
       {
         distance[i] = new int[obj.g.getVertices()];
@@ -267,5 +360,30 @@ public class JohnsonsAPSP
       System.out.println();
     }
 
+    // The same with the rows streamed to a memory mapped matrix
+    try
+    {
+      File file = File.createTempFile("johnsons", ".dmx");
+      file.deleteOnExit();
+      JohnsonsAPSP obj = new JohnsonsAPSP(5);
+      int V = obj.g.getVertices();
+      try (MappedDistanceMatrix m = MappedDistanceMatrix.create(file.getPath(), V, false))
+      {
+        obj.johnsonsAlgorithm(m);
+        boolean same = true;
+        for (int i = 0; i < V && same; i++)
+        {
+          for (int j = 0; j < V && same; j++)
+            same = m.get(i, j) == distance[i][j];
+        }
+        System.out.println("Memory mapped distances same as in memory: " + same);
+      }
+      file.delete();
+    }
+    catch (IOException e)
+    {
+      System.out.println("Could not use a matrix file: " + e);
+    }
+
   }
 }
@@ -35,6 +35,7 @@
 // single DFS.
 
 import pkg.graphs.Graph;
+import pkg.graphs.CSRGraph;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Arrays;
@@ -64,27 +65,27 @@ public class KosarajuSCC
   {
     visited[i] = true;
 
-    LinkedList<Integer> children = g.getAdjList().get(i);
-    for (Integer child : children)
+    CSRGraph csr = g.freeze();
+    int[] children = csr.getTargets();
+    for (int k = csr.getOffsets()[i]; k < csr.getOffsets()[i + 1]; k++)
     {
-      if (visited[child] == false)
-        tSort(child, visited, stack);
+      if (visited[children[k]] == false)
+        tSort(children[k], visited, stack);
     }
 
     stack.push(i);
   }
 
-  // Algorithm for DFS
-  public void dfs(Graph g, int i, boolean[] visited)
+  // Algorithm for DFS over a CSR adjascency (offsets, children)
+  public void dfs(int[] offsets, int[] children, int i, boolean[] visited)
   {
     System.out.print(i + " ");
     visited[i] = true;
 
-    LinkedList<Integer> children = g.getAdjList().get(i);
-    for (Integer child : children)
+    for (int k = offsets[i]; k < offsets[i + 1]; k++)
     {
-      if (visited[child] == false)
-        dfs(g, child, visited);
+      if (visited[children[k]] == false)
+        dfs(offsets, children, children[k], visited);
     }
   }
 
@@ -122,8 +123,9 @@ public class KosarajuSCC
         tSort(i, visited, stack);
     }
 
-    // Get Transpose of the Graph
-    Graph transpose = getTranspose();
+    // The transpose of the Graph is the reverse CSR of its frozen view,
+    // so no new Graph has to be built (see getTranspose() for the explicit way)
+    CSRGraph csr = g.freeze();
     // Reinitialize the visted array
     Arrays.fill(visited, false);
 
@@ -139,7 +141,7 @@ public class KosarajuSCC
       if (visited[node] == false)
       {
         System.out.print("Component " + count + ": ");
-        dfs(transpose, node, visited);
+        dfs(csr.getInOffsets(), csr.getInSources(), node, visited);
         System.out.println();
       }
     }
@@ -38,10 +38,9 @@
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Collections;
 import pkg.graphs.Graph;
 import pkg.graphs.Edge;
+import pkg.graphs.EdgeArray;
 
 public class KruskalsMST
 {
@@ -84,39 +83,29 @@ public class KruskalsMST
     for (int i=0; i < edgeSets.length; i++)
       edgeSets[i] = i;
 
-    ArrayList<Edge> eList = g.getEdgeList();
-    EdgeComparator eComparator = new EdgeComparator();
-    Collections.sort(eList, eComparator);
+    // Sort the edges as primitive arrays, only the V-1 edges of the spanning
+    // tree become Edge objects
+    EdgeArray eList = g.getEdgeArray(null);
+    eList.sortByWeight();
 
-    for (Edge e : eList)
+    for (int e = 0; e < eList.size(); e++)
     {
-      int srcSet  = find(edgeSets, e.getSource());
-      int destSet = find(edgeSets, e.getDestination());
+      int src  = eList.getSource(e);
+      int dest = eList.getDestination(e);
+      int srcSet  = find(edgeSets, src);
+      int destSet = find(edgeSets, dest);
 
       if (srcSet != destSet)
       {
         // edgeSets[srcSet] = destSet;
-        union(edgeSets, e.getSource(), e.getDestination());
-        result.add(e);
+        union(edgeSets, src, dest);
+        result.add(new Edge(src, dest, eList.getWeight(e)));
       }
     }
 
     return result;
   }
 
-  public class EdgeComparator implements Comparator<Edge>
-  {
-    @Override
-    public int compare(Edge e1, Edge e2)
-    {
-      if (e1.getWeight() < e2.getWeight())
-        return -1;
-      else if (e1.getWeight() > e2.getWeight())
-        return 1;
-      return 0;
-    }
-  }
-
   public static void main(String[] args)
   {
     KruskalsMST obj = new KruskalsMST();
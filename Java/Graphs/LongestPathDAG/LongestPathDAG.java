@@ -22,11 +22,23 @@
 
 // Time Complexity: O(V+E) because it uses Topological Sort
 
+// The topological order comes from Graph.topologicalOrder(), which runs Kahn's
+// algorithm iteratively (so long chains can't overflow the stack) and caches
+// the order until the Graph changes. Queries from many sources then only pay
+// for the sweep:
+// - longestPathFromAny() starts from a set of sources at once, as if from a
+//   super-source with a 0 edge to each of them, in one O(V+E) sweep
+// - longestPaths() finds the distances from every source of a batch in one
+//   sweep, keeping the k distances of a vertex next to each other and
+//   skipping vertices no source has reached yet
+// - criticalPath() is the longest path between any two vertices, e.g. the
+//   chain of steps that bounds the duration of a build or a project plan
+
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.HashMap;
-import java.util.Stack;
+import java.util.Collections;
+import java.util.Random;
+import pkg.graphs.CSRGraph;
 import pkg.graphs.Graph;
 
 public class LongestPathDAG
@@ -40,48 +52,126 @@ public class LongestPathDAG
     constructGraph();
   }
 
-  public void tSort(int v, boolean[] visited, Stack<Integer> stack)
+  LongestPathDAG(Graph g)
   {
-    visited[v] = true;
-
-    LinkedList<Integer> children = g.getAdjList().get(v);
-    for(Integer child : children)
-    {
-      if (!visited[child])
-        tSort(child, visited, stack);
-    }
-    stack.push(v);
+    this.g = g;
   }
 
   public int[] shortestPath(int src)
   {
-    int V = g.getVertices();
-    boolean[] visited = new boolean[V];
-    int[] distance = new int[V];
-    Stack<Integer> stack = new Stack<Integer>();
+    return longestPathFromAny(new int[] {src}, null);
+  }
 
-    Arrays.fill(visited, false);
+  // Distance of every vertex along the longest path from any of the
+  // sources. Fills pred (-1 for sources and unreachable vertices) unless it
+  // is null.
+  public int[] longestPathFromAny(int[] sources, int[] pred)
+  {
+    CSRGraph csr = g.freeze();
+    int[] order = csr.topologicalOrder();
+    int[] offsets = csr.getOffsets(), targets = csr.getTargets();
+    int[] weights = csr.getWeights();
+    int[] distance = new int[csr.getVertices()];
     Arrays.fill(distance, NINF);
-    distance[src] = 0;
+    if (pred != null)
+      Arrays.fill(pred, -1);
+    for (int src : sources)
+      distance[src] = 0;
 
-    for (int i=0; i<V; i++)
+    for (int p = first(order, sources); p < order.length; p++)
     {
-      if (!visited[i])
-        tSort(i, visited, stack);
+      int u = order[p];
+      if (distance[u] == NINF)
+        continue;
+      for (int i = offsets[u]; i < offsets[u + 1]; i++)
+      {
+        if (distance[targets[i]] < distance[u] + weights[i])
+        {
+          distance[targets[i]] = distance[u] + weights[i];
+          if (pred != null)
+            pred[targets[i]] = u;
+        }
+      }
     }
+    return distance;
+  }
 
-    while (!stack.isEmpty())
+  // Distances from each of the sources in one sweep. They are returned as
+  // laid out during the sweep: the distance from sources[s] to v is at
+  // [v*k + s], for k sources, so the k distances of a vertex share a cache
+  // line and every edge is read once for the whole batch.
+  public int[] longestPaths(int[] sources)
+  {
+    CSRGraph csr = g.freeze();
+    int[] order = csr.topologicalOrder();
+    int[] offsets = csr.getOffsets(), targets = csr.getTargets();
+    int[] weights = csr.getWeights();
+    int V = csr.getVertices(), k = sources.length;
+    if ((long) V * k > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException(k + " sources for " + V
+                                         + " vertices are too many for one batch");
+    int[] lanes = new int[V * k];
+    Arrays.fill(lanes, NINF);
+    for (int s = 0; s < k; s++)
+      lanes[sources[s] * k + s] = 0;
+
+    for (int p = first(order, sources); p < order.length; p++)
     {
-      int i = (int)stack.pop();
-      LinkedList<Integer> children = g.getAdjList().get(i);
-      HashMap<Integer, Integer> edgeWeight = g.getWtList().get(i);
-      for (Integer child : children)
+      int v = order[p], u = v * k;
+      // Nothing to relax until some source reaches v
+      boolean reached = false;
+      for (int s = 0; s < k && !reached; s++)
+        reached = lanes[u + s] != NINF;
+      if (!reached)
+        continue;
+      for (int i = offsets[v]; i < offsets[v + 1]; i++)
       {
-        if (distance[i] != NINF && distance[child] < distance[i] + edgeWeight.get(child))
-          distance[child] = distance[i] + edgeWeight.get(child);
+        int t = targets[i] * k, w = weights[i];
+        for (int s = 0; s < k; s++)
+        {
+          if (lanes[u + s] != NINF && lanes[t + s] < lanes[u + s] + w)
+            lanes[t + s] = lanes[u + s] + w;
+        }
       }
     }
-    return distance;
+    return lanes;
+  }
+
+  // Longest path between any two vertices, i.e. from a super-source with a
+  // 0 edge to every vertex
+  public ArrayList<Integer> criticalPath()
+  {
+    int V = g.getVertices();
+    int[] all = new int[V], pred = new int[V];
+    for (int v = 0; v < V; v++)
+      all[v] = v;
+    int[] distance = longestPathFromAny(all, pred);
+
+    ArrayList<Integer> path = new ArrayList<Integer>();
+    if (V == 0)
+      return path;
+    int end = 0;
+    for (int v = 1; v < V; v++)
+    {
+      if (distance[v] > distance[end])
+        end = v;
+    }
+    for (int v = end; v != -1; v = pred[v])
+      path.add(v);
+    Collections.reverse(path);
+    return path;
+  }
+
+  // Position in order of the first source: no vertex before it is reachable
+  static int first(int[] order, int[] sources)
+  {
+    boolean[] isSource = new boolean[order.length];
+    for (int src : sources)
+      isSource[src] = true;
+    int p = 0;
+    while (p < order.length && !isSource[order[p]])
+      p++;
+    return p;
   }
 
   public void constructGraph()
@@ -98,6 +188,67 @@ public class LongestPathDAG
     g.addEdge(4, 5, -2);
   }
 
+  // A DAG with a chain through all v vertices, far too deep for a recursive
+  // topological sort, plus random edges from lower to higher vertices
+  static Graph randomDAG(int v, int extraEdges, long seed)
+  {
+    Random rand = new Random(seed);
+    int[] src = new int[v - 1 + extraEdges], dest = new int[src.length];
+    int[] wt = new int[src.length];
+    for (int i = 0; i < src.length; i++)
+    {
+      if (i < v - 1)
+      {
+        src[i] = i;
+        dest[i] = i + 1;
+      }
+      else
+      {
+        int a = rand.nextInt(v - 1);
+        src[i] = a;
+        dest[i] = a + 1 + rand.nextInt(Math.min(1000, v - 1 - a));
+      }
+      wt[i] = rand.nextInt(100);
+    }
+    Graph g = new Graph(v, true, true, src.length);
+    g.addEdges(src, dest, wt);
+    return g;
+  }
+
+  // Critical path of a large build-like DAG
+  static void critical()
+  {
+    int v = 1000000;
+    LongestPathDAG obj = new LongestPathDAG(randomDAG(v, 2 * v, 13));
+
+    long start = System.nanoTime();
+    ArrayList<Integer> path = obj.criticalPath();
+    long time = System.nanoTime() - start;
+
+    int length = 0;
+    boolean valid = true;
+    CSRGraph csr = obj.g.freeze();
+    for (int i = 1; i < path.size() && valid; i++)
+    {
+      // Heaviest edge between consecutive vertices of the path
+      int best = NINF;
+      for (int e = csr.getOffsets()[path.get(i - 1)]; e < csr.getOffsets()[path.get(i - 1) + 1]; e++)
+      {
+        if (csr.getTargets()[e] == path.get(i))
+          best = Math.max(best, csr.getWeights()[e]);
+      }
+      valid = best != NINF;
+      length += best;
+    }
+    int[] fromStart = obj.shortestPath(path.get(0));
+    System.out.println("Critical path of a DAG of " + v + " vertices, "
+                        + obj.g.getEdgeCount() + " edges: " + path.size()
+                        + " vertices from " + path.get(0) + " to " + path.get(path.size() - 1)
+                        + ", length " + length + ", valid " + (valid
+                        && fromStart[path.get(path.size() - 1)] == length)
+                        + ", " + time / 1000000 + " ms");
+  }
+
   public static void main(String[] args)
   {
     LongestPathDAG obj = new LongestPathDAG();
@@ -105,5 +256,17 @@ public class LongestPathDAG
     System.out.println("Given Graph: " + obj.g);
     System.out.println("Longest Distances from <1>(Integer.MIN_VALUE => NINF): "
                         + Arrays.toString(d));
+    int[] batch = obj.longestPaths(new int[] {0, 1});
+    int[][] rows = new int[2][obj.g.getVertices()];
+    for (int v = 0; v < obj.g.getVertices(); v++)
+    {
+      rows[0][v] = batch[2 * v];
+      rows[1][v] = batch[2 * v + 1];
+    }
+    System.out.println("Longest Distances from <0> and <1> in one sweep: "
+                        + Arrays.toString(rows[0]) + " " + Arrays.toString(rows[1]));
+    System.out.println("Critical Path: " + obj.criticalPath());
+
+    critical();
   }
 }
@@ -33,11 +33,11 @@
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 import java.util.Comparator;
 import pkg.graphs.Graph;
 import pkg.graphs.Edge;
+import pkg.graphs.NeighborCursor;
 
 public class PrimsMST
 {
@@ -110,11 +110,11 @@ public class PrimsMST
 
   public void addNeighbors(PriorityQueue<Edge> pq, int src)
   {
-    LinkedList<Integer> children = g.getAdjList().get(src);
-    HashMap<Integer, Integer> wtList = g.getWtList().get(src);
-    for (Integer child : children)
+    NeighborCursor children = g.outCursor();
+    children.reset(src);
+    while (children.next())
     {
-      pq.add(new Edge(src, child, wtList.get(child)));
+      pq.add(new Edge(src, children.target(), children.weight()));
     }
   }
 
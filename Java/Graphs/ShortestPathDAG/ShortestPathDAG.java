@@ -15,11 +15,20 @@
 
 // Time Complexity: O(V+E) because it uses Topological Sort
 
-import java.util.ArrayList;
+// The topological order comes from Graph.topologicalOrder(), which runs Kahn's
+// algorithm iteratively (so long chains can't overflow the stack) and caches
+// the order until the Graph changes. Queries from many sources then only pay
+// for the sweep:
+// - shortestPathFromAny() starts from a set of sources at once, as if from a
+//   super-source with a 0 edge to each of them, in one O(V+E) sweep
+// - shortestPaths() finds the distances from every source of a batch in one
+//   sweep, keeping the k distances of a vertex next to each other, so every
+//   edge is read once per batch instead of once per source, and vertices no
+//   source has reached yet are skipped
+
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.HashMap;
-import java.util.Stack;
+import java.util.Random;
+import pkg.graphs.CSRGraph;
 import pkg.graphs.Graph;
 
 public class ShortestPathDAG
@@ -33,48 +42,93 @@ public class ShortestPathDAG
     constructGraph();
   }
 
-  public void tSort(int v, boolean[] visited, Stack<Integer> stack)
+  ShortestPathDAG(Graph g)
   {
-    visited[v] = true;
-
-    LinkedList<Integer> children = g.getAdjList().get(v);
-    for(Integer child : children)
-    {
-      if (!visited[child])
-        tSort(child, visited, stack);
-    }
-    stack.push(v);
+    this.g = g;
   }
 
   public int[] shortestPath(int src)
   {
-    int V = g.getVertices();
-    boolean[] visited = new boolean[V];
-    int[] distance = new int[V];
-    Stack<Integer> stack = new Stack<Integer>();
+    return shortestPathFromAny(new int[] {src});
+  }
 
-    Arrays.fill(visited, false);
+  // Distance of every vertex from the closest of the sources
+  public int[] shortestPathFromAny(int[] sources)
+  {
+    CSRGraph csr = g.freeze();
+    int[] order = csr.topologicalOrder();
+    int[] offsets = csr.getOffsets(), targets = csr.getTargets();
+    int[] weights = csr.getWeights();
+    int[] distance = new int[csr.getVertices()];
     Arrays.fill(distance, INF);
-    distance[src] = 0;
+    for (int src : sources)
+      distance[src] = 0;
 
-    for (int i=0; i<V; i++)
+    for (int p = first(order, sources); p < order.length; p++)
     {
-      if (!visited[i])
-        tSort(i, visited, stack);
+      int u = order[p];
+      if (distance[u] == INF)
+        continue;
+      for (int i = offsets[u]; i < offsets[u + 1]; i++)
+      {
+        if (distance[targets[i]] > distance[u] + weights[i])
+          distance[targets[i]] = distance[u] + weights[i];
+      }
     }
+    return distance;
+  }
 
-    while (!stack.isEmpty())
+  // Distances from each of the sources in one sweep. They are returned as
+  // laid out during the sweep: the distance from sources[s] to v is at
+  // [v*k + s], for k sources, so the k distances of a vertex share a cache
+  // line and every edge is read once for the whole batch.
+  public int[] shortestPaths(int[] sources)
+  {
+    CSRGraph csr = g.freeze();
+    int[] order = csr.topologicalOrder();
+    int[] offsets = csr.getOffsets(), targets = csr.getTargets();
+    int[] weights = csr.getWeights();
+    int V = csr.getVertices(), k = sources.length;
+    if ((long) V * k > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException(k + " sources for " + V
+                                         + " vertices are too many for one batch");
+    int[] lanes = new int[V * k];
+    Arrays.fill(lanes, INF);
+    for (int s = 0; s < k; s++)
+      lanes[sources[s] * k + s] = 0;
+
+    for (int p = first(order, sources); p < order.length; p++)
     {
-      int i = (int)stack.pop();
-      LinkedList<Integer> children = g.getAdjList().get(i);
-      HashMap<Integer, Integer> edgeWeight = g.getWtList().get(i);
-      for (Integer child : children)
+      int v = order[p], u = v * k;
+      // Nothing to relax until some source reaches v
+      boolean reached = false;
+      for (int s = 0; s < k && !reached; s++)
+        reached = lanes[u + s] != INF;
+      if (!reached)
+        continue;
+      for (int i = offsets[v]; i < offsets[v + 1]; i++)
       {
-        if (distance[i] != INF && distance[child] > distance[i] + edgeWeight.get(child))
-          distance[child] = distance[i] + edgeWeight.get(child);
+        int t = targets[i] * k, w = weights[i];
+        for (int s = 0; s < k; s++)
+        {
+          if (lanes[u + s] != INF && lanes[t + s] > lanes[u + s] + w)
+            lanes[t + s] = lanes[u + s] + w;
+        }
       }
     }
-    return distance;
+    return lanes;
+  }
+
+  // Position in order of the first source: no vertex before it is reachable
+  static int first(int[] order, int[] sources)
+  {
+    boolean[] isSource = new boolean[order.length];
+    for (int src : sources)
+      isSource[src] = true;
+    int p = 0;
+    while (p < order.length && !isSource[order[p]])
+      p++;
+    return p;
   }
 
   public void constructGraph()
@@ -90,6 +144,83 @@ public class ShortestPathDAG
     g.addEdge(4, 5, -2);
   }
 
+  // A DAG with a chain through all v vertices, far too deep for a recursive
+  // topological sort, plus random edges from lower to higher vertices
+  static Graph randomDAG(int v, int extraEdges, long seed)
+  {
+    Random rand = new Random(seed);
+    int[] src = new int[v - 1 + extraEdges], dest = new int[src.length];
+    int[] wt = new int[src.length];
+    for (int i = 0; i < src.length; i++)
+    {
+      if (i < v - 1)
+      {
+        src[i] = i;
+        dest[i] = i + 1;
+      }
+      else
+      {
+        int a = rand.nextInt(v - 1);
+        src[i] = a;
+        dest[i] = a + 1 + rand.nextInt(Math.min(1000, v - 1 - a));
+      }
+      wt[i] = rand.nextInt(100);
+    }
+    Graph g = new Graph(v, true, true, src.length);
+    g.addEdges(src, dest, wt);
+    return g;
+  }
+
+  static void batched()
+  {
+    int v = 1000000, k = 8;
+    ShortestPathDAG obj = new ShortestPathDAG(randomDAG(v, 2 * v, 11));
+    int[] sources = new int[k];
+    for (int s = 0; s < k; s++)
+      sources[s] = s * 1000;
+
+    long start = System.nanoTime();
+    obj.g.topologicalOrder();
+    long sortTime = System.nanoTime() - start;
+
+    // Timed on the second round, once the JIT has compiled both sweeps
+    int[][] single = new int[k][];
+    int[] batch = null;
+    long singleTime = 0, batchTime = 0;
+    for (int round = 0; round < 2; round++)
+    {
+      start = System.nanoTime();
+      for (int s = 0; s < k; s++)
+        single[s] = obj.shortestPath(sources[s]);
+      singleTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      batch = obj.shortestPaths(sources);
+      batchTime = System.nanoTime() - start;
+    }
+
+    int[] any = obj.shortestPathFromAny(sources);
+    boolean same = true, sameAny = true;
+    for (int s = 0; s < k; s++)
+    {
+      for (int u = 0; u < v; u++)
+        same &= single[s][u] == batch[u * k + s];
+    }
+    for (int u = 0; u < v; u++)
+    {
+      int min = INF;
+      for (int s = 0; s < k; s++)
+        min = Math.min(min, batch[u * k + s]);
+      sameAny &= any[u] == min;
+    }
+    System.out.println("DAG of " + v + " vertices, " + obj.g.getEdgeCount()
+                        + " edges, " + k + " sources: same distances in a batch "
+                        + same + ", from any source " + sameAny);
+    System.out.println("  topological order: " + sortTime / 1000000 + " ms, "
+                        + k + " single sweeps: " + singleTime / 1000000
+                        + " ms, one batched sweep: " + batchTime / 1000000 + " ms");
+  }
+
   public static void main(String[] args)
   {
     ShortestPathDAG obj = new ShortestPathDAG();
@@ -97,5 +228,19 @@ public class ShortestPathDAG
     System.out.println("Given Graph: " + obj.g);
     System.out.println("Shortest Distances from <1>(Integer.MAX_VALUE => INF): "
                         + Arrays.toString(d));
+    System.out.println("Topological Order: " + Arrays.toString(obj.g.topologicalOrder()));
+    int[] batch = obj.shortestPaths(new int[] {0, 1});
+    int[][] rows = new int[2][obj.g.getVertices()];
+    for (int v = 0; v < obj.g.getVertices(); v++)
+    {
+      rows[0][v] = batch[2 * v];
+      rows[1][v] = batch[2 * v + 1];
+    }
+    System.out.println("Shortest Distances from <0> and <1> in one sweep: "
+                        + Arrays.toString(rows[0]) + " " + Arrays.toString(rows[1]));
+    System.out.println("Shortest Distances from the closest of <1>, <3>: "
+                        + Arrays.toString(obj.shortestPathFromAny(new int[] {1, 3})));
+
+    batched();
   }
 }
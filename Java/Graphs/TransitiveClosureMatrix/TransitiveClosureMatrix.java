@@ -17,10 +17,11 @@
 
 // Time Complexity: O(V^2) -- Better than Floyd Warshall
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.Arrays;
 import pkg.graphs.Graph;
+import pkg.graphs.GraphView;
+import pkg.graphs.NeighborCursor;
+import pkg.graphs.VersionedGraph;
 
 public class TransitiveClosureMatrix
 {
@@ -42,32 +43,47 @@ public class TransitiveClosureMatrix
     g.addEdge(3, 3);
   }
 
-  public void dfs(int i, int j, int[][] arr)
+  // Marks every vertex reachable from i in arr[i], with an explicit stack so
+  // that it only needs the GraphView's cursors
+  public void dfs(NeighborCursor c, int i, int[] stack, int[][] arr)
   {
-    arr[i][j] = 1;
-
-    // Get children of destination vertex
-    LinkedList<Integer> children = g.getAdjList().get(j);
-    for (Integer child : children)
+    int top = 0;
+    arr[i][i] = 1;
+    stack[top++] = i;
+    while (top > 0)
     {
-      // Check or update transitive matrix of Souce with Destination's children
-      if (arr[i][child] == 0)
-        dfs(i, child, arr);
+      // Get children of destination vertex
+      c.reset(stack[--top]);
+      while (c.next())
+      {
+        // Check or update transitive matrix of Souce with Destination's children
+        int child = c.target();
+        if (arr[i][child] == 0)
+        {
+          arr[i][child] = 1;
+          stack[top++] = child;
+        }
+      }
     }
   }
 
   public int[][] getTransitiveClosure()
   {
-    int V = g.getVertices();
+    return getTransitiveClosure(g);
+  }
+
+  // Works on any graph, e.g. a VersionedGraph snapshot that other threads
+  // keep publishing new versions of
+  public int[][] getTransitiveClosure(GraphView view)
+  {
+    int V = view.getVertices();
     int[][] arr = new int[V][V];
-    for (int i=0; i<V; i++)
-    {
-      arr[i] = new int[V];
-      Arrays.fill(arr[i], 0);
-    }
+    // Every vertex is pushed at most once per source
+    int[] stack = new int[V];
+    NeighborCursor c = view.outCursor();
 
     for (int i=0; i<V; i++)
-      dfs(i, i,  arr);
+      dfs(c, i, stack, arr);
 
     return arr;
   }
@@ -80,5 +96,21 @@ public class TransitiveClosureMatrix
     System.out.println("Tansitive Closure Matrix: ");
     for (int i=0; i<obj.g.getVertices(); i++)
       System.out.println(Arrays.toString(result[i]));
+
+    // Queries on a snapshot keep seeing the same version while edges are
+    // added and published
+    VersionedGraph live = new VersionedGraph(obj.g.freeze());
+    VersionedGraph.Snapshot before = live.snapshot();
+    live.addEdge(3, 1);
+    live.publish();
+    int[][] after = obj.getTransitiveClosure(live.snapshot());
+    result = obj.getTransitiveClosure(before);
+    System.out.println("Snapshot version " + before.getVersion() + ": ");
+    for (int i=0; i<obj.g.getVertices(); i++)
+      System.out.println(Arrays.toString(result[i]));
+    System.out.println("After adding (3, 1), version "
+                       + live.snapshot().getVersion() + ": ");
+    for (int i=0; i<obj.g.getVertices(); i++)
+      System.out.println(Arrays.toString(after[i]));
   }
 }
@@ -11,9 +11,7 @@
 
 // Time Complexity : O(V+E)
 import pkg.graphs.Graph;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.HashMap;
+import pkg.graphs.NeighborCursor;
 
 public class TransposeGraph
 {
@@ -38,37 +36,21 @@ public class TransposeGraph
 
   public void transpose()
   {
-    ArrayList<LinkedList<Integer>> tList = new ArrayList<LinkedList<Integer>>();
-    ArrayList<ArrayList<Integer>> tInList = new ArrayList<ArrayList<Integer>>();
-    ArrayList<ArrayList<Integer>> tOutList
-                                  = new ArrayList<ArrayList<Integer>>();
-    ArrayList<HashMap<Integer, Integer>> tWtList
-                                  = new ArrayList<HashMap<Integer, Integer>>();
+    // Every undirected edge already goes both ways, so the Graph is its own
+    // transpose. Adding the reversed edges would add each of them twice.
+    if (!g.getIsDirected())
+      return;
 
-    for (int i =0; i<g.getVertices(); i++)
-    {
-      tList.add(new LinkedList<Integer>());
-      tInList.add(new ArrayList<Integer>());
-      tOutList.add(new ArrayList<Integer>());
-      tWtList.add(new HashMap<Integer, Integer>());
-    }
+    Graph t = new Graph(g.getVertices(), g.getIsDirected(), g.getIsWeighted());
 
+    NeighborCursor children = g.outCursor();
     for (int i=0; i<g.getVertices(); i++)
     {
-      LinkedList<Integer> children = g.getAdjList().get(i);
-      HashMap<Integer, Integer> wts = g.getWtList().get(i);
-      for (Integer child : children)
-      {
-        tList.get(child).add(i);
-        tOutList.get(child).add(i);
-        tInList.get(i).add(child);
-        tWtList.get(child).put(i, wts.get(child));
-      }
+      children.reset(i);
+      while (children.next())
+        t.addEdge(children.target(), i, children.weight());
     }
-    g.setAdjList(tList);
-    g.setInList(tInList);
-    g.setOutList(tOutList);
-    g.setWtList(tWtList);
+    g = t;
   }
 
   public static void main(String[] args)
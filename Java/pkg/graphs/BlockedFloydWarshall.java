@@ -0,0 +1,342 @@
+package pkg.graphs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Floyd-Warshall over one flat row major matrix, d[i*n + j], split in square
+// tiles of TILE x TILE entries.
+//
+// The plain k-i-j loop streams the whole V*V matrix through the cache once
+// per k, so beyond a few thousand vertices every step is a cache miss. Here
+// the k loop advances one tile width at a time, and every round relaxes
+// tiles against tiles, each pass over three tiles that stay in the cache:
+//   1. the diagonal tile (kb, kb), through itself
+//   2. the tiles in row kb and column kb, through the diagonal tile
+//   3. every other tile (ib, jb), through tiles (ib, kb) and (kb, jb)
+// Phase 1 only depends on the previous round, phase 2 on phase 1 and phase 3
+// on phase 2. Within phases 2 and 3 the tiles are independent, so they are
+// relaxed in parallel on the ForkJoin common pool.
+//
+// Distances are INF = Integer.MAX_VALUE/2 for missing edges, which can be
+// added without overflow. The predecessor matrix is optional.
+
+public class BlockedFloydWarshall
+{
+  public static final int INF = Integer.MAX_VALUE / 2;
+  // 64 x 64 ints are 16 KB, so the three tiles of a pass fit in L2
+  public static final int TILE = 64;
+
+  // Runs Floyd-Warshall in place on the n*n distances d, and on the
+  // predecessors p (p[i*n + j] is the vertex before j on the path from i)
+  // unless p is null
+  public static void run(int[] d, int[] p, int n)
+  {
+    run(d, p, n, TILE);
+  }
+
+  public static void run(int[] d, int[] p, int n, int tile)
+  {
+    if (d.length < (long) n * n || (p != null && p.length < (long) n * n))
+      throw new IllegalArgumentException("Matrix smaller than " + n + " x " + n);
+    if (tile < 1)
+      throw new IllegalArgumentException("Tile width must be positive, got " + tile);
+    int tiles = (n + tile - 1) / tile;
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    for (int kb = 0; kb < tiles; kb++)
+    {
+      Round r = new Round(d, p, n, tile, tiles, kb);
+      r.relax(kb, kb);
+      // All tiles of row and column kb but the diagonal one
+      pool.invoke(new Phase(r, 2, 0, 2 * (tiles - 1)));
+      // All tiles outside row and column kb
+      pool.invoke(new Phase(r, 3, 0, (tiles - 1) * (tiles - 1)));
+    }
+  }
+
+  // Whether the result of run() has a negative cycle: some vertex then has a
+  // negative distance to itself
+  public static boolean hasNegativeCycle(int[] d, int n)
+  {
+    for (int i = 0; i < n; i++)
+    {
+      if (d[i * n + i] < 0)
+        return true;
+    }
+    return false;
+  }
+
+  // The matrix and the k tile of one round
+  static class Round
+  {
+    final int[] d, p;
+    final int n, tile, tiles, kb;
+
+    Round(int[] d, int[] p, int n, int tile, int tiles, int kb)
+    {
+      this.d = d;
+      this.p = p;
+      this.n = n;
+      this.tile = tile;
+      this.tiles = tiles;
+      this.kb = kb;
+    }
+
+    // The other tile index of the t-th tile of a phase, skipping kb
+    int skip(int t)
+    {
+      return t < kb ? t : t + 1;
+    }
+
+    void relax(int ib, int jb)
+    {
+      int i0 = ib * tile, j0 = jb * tile, k0 = kb * tile;
+      int rows = Math.min(tile, n - i0);
+      int cols = Math.min(tile, n - j0);
+      int depth = Math.min(tile, n - k0);
+      if (ib == kb || jb == kb)
+        relaxTile(d, p, i0 * n + j0, d, i0 * n + k0, d, p, k0 * n + j0, n,
+                  rows, cols, depth);
+      else
+        relaxDisjointTile(d, p, i0 * n + j0, d, i0 * n + k0, d, p,
+                          k0 * n + j0, n, rows, cols, depth);
+    }
+  }
+
+  // Relaxes tiles [from, to) of phase 2 or 3 of a round, splitting the range
+  // in halves down to single tiles, which are large enough units of work
+  static class Phase extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    final Round r;
+    final int phase, from, to;
+
+    Phase(Round r, int phase, int from, int to)
+    {
+      this.r = r;
+      this.phase = phase;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from > 1)
+      {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Phase(r, phase, from, mid), new Phase(r, phase, mid, to));
+        return;
+      }
+      if (from == to)
+        return;
+      if (phase == 2)
+      {
+        // Row kb first, then column kb
+        int t = from < r.tiles - 1 ? from : from - (r.tiles - 1);
+        if (from < r.tiles - 1)
+          r.relax(r.kb, r.skip(t));
+        else
+          r.relax(r.skip(t), r.kb);
+      }
+      else
+        r.relax(r.skip(from / (r.tiles - 1)), r.skip(from % (r.tiles - 1)));
+    }
+  }
+
+  // Inner loop of relaxDisjointTile()
+  public enum Kernel
+  {
+    // Compares every entry and skips INF ones, as the plain Floyd-Warshall
+    // loop does
+    SCALAR,
+    // Masked arithmetic without branches, which the JIT compiles to SIMD
+    // instructions, for rows whose A[i][k] is non negative
+    BRANCH_FREE
+  }
+
+  static volatile Kernel kernel = kernelFromProperty();
+
+  // The kernel can be picked with -Dpkg.graphs.minplus=scalar or
+  // -Dpkg.graphs.minplus=branch_free, or with setKernel()
+  static Kernel kernelFromProperty()
+  {
+    String name = System.getProperty("pkg.graphs.minplus");
+    if (name == null)
+      return Kernel.BRANCH_FREE;
+    try
+    {
+      return Kernel.valueOf(name.trim().toUpperCase());
+    }
+    catch (IllegalArgumentException e)
+    {
+      return Kernel.BRANCH_FREE;
+    }
+  }
+
+  public static void setKernel(Kernel k)
+  {
+    kernel = k;
+  }
+
+  public static Kernel getKernel()
+  {
+    return kernel;
+  }
+
+  // Relaxes tile C through tiles A and B. For every k < depth, in order, and
+  // every i < rows, j < cols:
+  //   C[i][j] = min(C[i][j], A[i][k] + B[k][j])
+  // where X[r][s] is x[xOff + r*stride + s]. The predecessor of an improved
+  // C[i][j] is taken from the predecessors of B (bp), and neither is touched
+  // if cp is null.
+  // The tiles may overlap (A or B is C in phases 1 and 2): as k is the
+  // outer loop, that is the in place update of plain Floyd-Warshall.
+  // Distances below -INF (from negative cycles) are clamped, so they can't
+  // overflow.
+  public static void relaxTile(int[] c, int[] cp, int cOff, int[] a, int aOff,
+                               int[] b, int[] bp, int bOff, int stride,
+                               int rows, int cols, int depth)
+  {
+    for (int k = 0; k < depth; k++)
+    {
+      for (int i = 0; i < rows; i++)
+      {
+        int aik = a[aOff + i * stride + k];
+        if (aik != INF)
+          relaxRow(c, cp, cOff + i * stride, aik, b, bp, bOff + k * stride, cols);
+      }
+    }
+  }
+
+  // Same, for a tile C that overlaps neither A nor B, as in phase 3, so that
+  // the loops can run in any order.
+  // With the BRANCH_FREE kernel every row of C is copied out once, relaxed
+  // through all rows of B and copied back. The rows of B are copied out
+  // too, as the JIT only vectorizes the inner loop if all arrays in it are
+  // indexed by j alone.
+  public static void relaxDisjointTile(int[] c, int[] cp, int cOff, int[] a,
+                                       int aOff, int[] b, int[] bp, int bOff,
+                                       int stride, int rows, int cols,
+                                       int depth)
+  {
+    if (kernel == Kernel.SCALAR)
+    {
+      relaxTile(c, cp, cOff, a, aOff, b, bp, bOff, stride, rows, cols, depth);
+      return;
+    }
+    Scratch s = scratch.get().fit(depth, cols);
+    for (int k = 0; k < depth; k++)
+    {
+      System.arraycopy(b, bOff + k * stride, s.b[k], 0, cols);
+      if (cp != null)
+        System.arraycopy(bp, bOff + k * stride, s.bp[k], 0, cols);
+    }
+    for (int i = 0; i < rows; i++)
+    {
+      int ci = cOff + i * stride, ai = aOff + i * stride;
+      System.arraycopy(c, ci, s.c, 0, cols);
+      if (cp != null)
+        System.arraycopy(cp, ci, s.cp, 0, cols);
+      for (int k = 0; k < depth; k++)
+      {
+        int aik = a[ai + k];
+        if (aik == INF)
+          continue;
+        // All entries are in [-INF, INF], so with aik >= 0 the sum neither
+        // overflows nor drops below -INF, and aik + INF >= INF never beats
+        // an entry: the INF checks and the clamp can go
+        if (aik < 0)
+          relaxRow(s.c, cp == null ? null : s.cp, 0, aik, s.b[k], s.bp[k], 0, cols);
+        else if (cp == null)
+          minRow(s.c, aik, s.b[k], cols);
+        else
+          minRow(s.c, s.cp, aik, s.b[k], s.bp[k], cols);
+      }
+      System.arraycopy(s.c, 0, c, ci, cols);
+      if (cp != null)
+        System.arraycopy(s.cp, 0, cp, ci, cols);
+    }
+  }
+
+  // Row copies of relaxDisjointTile(), one set per thread
+  static class Scratch
+  {
+    int[] c = new int[0], cp = new int[0];
+    int[][] b = new int[0][], bp = new int[0][];
+
+    Scratch fit(int depth, int cols)
+    {
+      if (c.length < cols || b.length < depth)
+      {
+        int w = Math.max(cols, c.length), h = Math.max(depth, b.length);
+        c = new int[w];
+        cp = new int[w];
+        b = new int[h][w];
+        bp = new int[h][w];
+      }
+      return this;
+    }
+  }
+
+  static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  // c[ci + j] = min(c[ci + j], aik + b[bk + j]) for j < cols, skipping INF
+  // entries of b
+  static void relaxRow(int[] c, int[] cp, int ci, int aik, int[] b, int[] bp,
+                       int bk, int cols)
+  {
+    if (cp == null)
+    {
+      for (int j = 0; j < cols; j++)
+      {
+        int bkj = b[bk + j];
+        if (bkj != INF && c[ci + j] > aik + bkj)
+          c[ci + j] = Math.max(aik + bkj, -INF);
+      }
+      return;
+    }
+    for (int j = 0; j < cols; j++)
+    {
+      int bkj = b[bk + j];
+      if (bkj != INF && c[ci + j] > aik + bkj)
+      {
+        c[ci + j] = Math.max(aik + bkj, -INF);
+        cp[ci + j] = bp[bk + j];
+      }
+    }
+  }
+
+  // c[j] = min(c[j], aik + b[j]) for j < cols, for aik >= 0.
+  // The JIT doesn't vectorize Math.min on ints, so min(x, y) is computed as
+  // x + ((y - x) & ((y - x) >> 31)): the shift spreads the sign of y - x
+  // into a mask that keeps the difference only if y is smaller. The sum is
+  // first capped at INF the same way, which keeps every difference within
+  // int range.
+  static void minRow(int[] c, int aik, int[] b, int cols)
+  {
+    for (int j = 0; j < cols; j++)
+    {
+      int e = aik + b[j] - INF;
+      int sum = INF + (e & (e >> 31));
+      int d = sum - c[j];
+      c[j] += d & (d >> 31);
+    }
+  }
+
+  // Same, also blending in the predecessor from bp where the sum is smaller
+  static void minRow(int[] c, int[] cp, int aik, int[] b, int[] bp, int cols)
+  {
+    for (int j = 0; j < cols; j++)
+    {
+      int e = aik + b[j] - INF;
+      int sum = INF + (e & (e >> 31));
+      int d = sum - c[j];
+      // All ones where sum < c[j]
+      int less = d >> 31;
+      c[j] += d & less;
+      cp[j] = (bp[j] & less) | (cp[j] & ~less);
+    }
+  }
+}
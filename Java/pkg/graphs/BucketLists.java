@@ -0,0 +1,66 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Buckets of vertices as intrusive doubly linked lists over int arrays, so
+// that a vertex can be moved between buckets in O(1) without allocating.
+// Every vertex is in at most one bucket.
+
+class BucketLists
+{
+  // First vertex of every bucket, -1 if empty
+  final int[] head;
+  // Neighbours of every vertex in its bucket's list, -1 at the ends
+  final int[] next, prev;
+  // Bucket of every vertex, -1 if it isn't in any
+  final int[] bucket;
+
+  BucketLists(int buckets, int capacity)
+  {
+    head = new int[buckets];
+    next = new int[capacity];
+    prev = new int[capacity];
+    bucket = new int[capacity];
+    Arrays.fill(head, -1);
+    Arrays.fill(bucket, -1);
+  }
+
+  void add(int v, int b)
+  {
+    int h = head[b];
+    next[v] = h;
+    prev[v] = -1;
+    if (h >= 0)
+      prev[h] = v;
+    head[b] = v;
+    bucket[v] = b;
+  }
+
+  void remove(int v)
+  {
+    int b = bucket[v];
+    if (prev[v] >= 0)
+      next[prev[v]] = next[v];
+    else
+      head[b] = next[v];
+    if (next[v] >= 0)
+      prev[next[v]] = prev[v];
+    bucket[v] = -1;
+  }
+
+  // Removes and returns the first vertex of bucket b, which must not be empty
+  int removeFirst(int b)
+  {
+    int v = head[b];
+    remove(v);
+    return v;
+  }
+
+  // Empties bucket b
+  void clear(int b)
+  {
+    for (int v = head[b]; v >= 0; v = next[v])
+      bucket[v] = -1;
+    head[b] = -1;
+  }
+}
@@ -0,0 +1,99 @@
+package pkg.graphs;
+
+// Dial's bucket queue, for Dijkstra's algorithm on graphs whose edge weights
+// are small non-negative ints.
+//
+// Vertices with key k are kept in bucket k. When the smallest queued key is
+// m, every queued key lies in m .. m+C (C being the largest edge weight), so
+// C+1 buckets used circularly are enough. poll() walks the buckets upwards
+// from m until one isn't empty; the walk never goes back, so the whole search
+// costs O(E + V + D) for a largest distance D <= (V-1)*C, and inserting or
+// decreasing a key is O(1).
+
+public class BucketQueue implements IndexedMinQueue
+{
+  final int maxWeight;
+  final BucketLists buckets;
+  final int[] keys;
+  int size;
+  // No queued key is smaller than this
+  int current;
+
+  public BucketQueue(int capacity, int maxWeight)
+  {
+    if (maxWeight < 0)
+      throw new IllegalArgumentException("Negative edge weight " + maxWeight);
+    this.maxWeight = maxWeight;
+    buckets = new BucketLists(maxWeight + 1, capacity);
+    keys = new int[capacity];
+  }
+
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public boolean contains(int v)
+  {
+    return buckets.bucket[v] >= 0;
+  }
+
+  public boolean insertOrDecrease(int v, int key)
+  {
+    boolean queued = contains(v);
+    if (queued && key >= keys[v])
+      return false;
+    boolean inRange = key >= current && key - current <= maxWeight;
+    // The buckets can move anywhere while nothing else is queued. They
+    // are left at the last key polled if possible though, as Dijkstra may
+    // still queue smaller keys relaxing the edges of the last vertex.
+    if (size == (queued ? 1 : 0))
+    {
+      if (!inRange)
+        current = key;
+    }
+    else if (!inRange)
+      throw new IllegalArgumentException("Key " + key + " out of the range "
+                                         + current + " .. "
+                                         + (current + maxWeight)
+                                         + " of the buckets");
+    if (queued)
+      buckets.remove(v);
+    else
+      size++;
+    keys[v] = key;
+    buckets.add(v, key % (maxWeight + 1));
+    return true;
+  }
+
+  public int poll()
+  {
+    int n = maxWeight + 1;
+    while (buckets.head[current % n] < 0)
+      current++;
+    size--;
+    return buckets.removeFirst(current % n);
+  }
+
+  // O(1) if the queue is already empty, O(C) otherwise
+  public void clear()
+  {
+    if (size > 0)
+    {
+      for (int b = 0; b <= maxWeight; b++)
+        buckets.clear(b);
+    }
+    size = 0;
+    current = 0;
+  }
+}
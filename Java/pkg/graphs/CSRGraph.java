@@ -0,0 +1,270 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Read-only Compressed Sparse Row (CSR) view of a Graph, built by Graph.freeze()
+//
+// The out-neighbours of a vertex v are stored contiguously as
+//     targets[offsets[v]] ... targets[offsets[v+1] - 1]
+// and weights[i] is the weight of the edge stored at targets[i].
+// The in-neighbours are stored the same way in a reverse CSR
+// (inOffsets, inSources, inWeights).
+//
+// An undirected edge is stored in both directions (as in Graph's adjascency
+// list), so for undirected graphs the reverse CSR is the forward CSR and the
+// arrays are shared.
+//
+// Space Complexity: O(V + E) ints, with no per-edge objects.
+// The arrays are handed out directly for speed and must not be modified.
+
+public class CSRGraph implements GraphView
+{
+  final int vertices, edges;
+  final boolean isDirected, isWeighted;
+  // Forward CSR (out edges)
+  final int[] offsets, targets, weights;
+  // Reverse CSR (in edges)
+  final int[] inOffsets, inSources, inWeights;
+  // Topological order, computed on first use. The view never changes, so
+  // it stays valid for as long as the view is in use.
+  volatile int[] topoOrder;
+
+  CSRGraph(int n, int e, boolean dir, boolean wt,
+           int[] off, int[] tgt, int[] wts)
+  {
+    vertices = n;
+    edges = e;
+    isDirected = dir;
+    isWeighted = wt;
+    offsets = off;
+    targets = tgt;
+    weights = wts;
+
+    if (!isDirected)
+    {
+      inOffsets = offsets;
+      inSources = targets;
+      inWeights = weights;
+      return;
+    }
+
+    // Count the in-degree of every vertex, prefix sum it into offsets and then
+    // scatter every edge (u, v) into the slot reserved for v.
+    inOffsets = new int[vertices + 1];
+    for (int i = 0; i < offsets[vertices]; i++)
+      inOffsets[targets[i] + 1]++;
+    for (int v = 0; v < vertices; v++)
+      inOffsets[v + 1] += inOffsets[v];
+
+    inSources = new int[offsets[vertices]];
+    inWeights = new int[offsets[vertices]];
+    int[] next = new int[vertices];
+    System.arraycopy(inOffsets, 0, next, 0, vertices);
+    for (int u = 0; u < vertices; u++)
+    {
+      for (int i = offsets[u]; i < offsets[u + 1]; i++)
+      {
+        int slot = next[targets[i]]++;
+        inSources[slot] = u;
+        inWeights[slot] = weights[i];
+      }
+    }
+  }
+
+  // Sorts targets[from..to) by target (then weight), keeping weights aligned
+  static void sortSlice(int[] targets, int[] weights, int from, int to)
+  {
+    int n = to - from;
+    if (n < 2)
+      return;
+    if (n <= 16)
+    {
+      for (int i = from + 1; i < to; i++)
+      {
+        int t = targets[i], w = weights[i];
+        int j = i - 1;
+        while (j >= from && (targets[j] > t || (targets[j] == t && weights[j] > w)))
+        {
+          targets[j + 1] = targets[j];
+          weights[j + 1] = weights[j];
+          j--;
+        }
+        targets[j + 1] = t;
+        weights[j + 1] = w;
+      }
+      return;
+    }
+    // Targets are non negative, so (target, weight) pairs sort as longs with
+    // the weight biased into the unsigned low half
+    long[] keys = new long[n];
+    for (int i = 0; i < n; i++)
+      keys[i] = ((long) targets[from + i] << 32)
+                | ((weights[from + i] ^ Integer.MIN_VALUE) & 0xffffffffL);
+    Arrays.sort(keys);
+    for (int i = 0; i < n; i++)
+    {
+      targets[from + i] = (int) (keys[i] >>> 32);
+      weights[from + i] = (int) keys[i] ^ Integer.MIN_VALUE;
+    }
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  public int getEdges()
+  {
+    return edges;
+  }
+
+  public long getEdgeCount()
+  {
+    return edges;
+  }
+
+  public boolean getIsDirected()
+  {
+    return isDirected;
+  }
+
+  public boolean getIsWeighted()
+  {
+    return isWeighted;
+  }
+
+  public int outDegree(int v)
+  {
+    return offsets[v + 1] - offsets[v];
+  }
+
+  public int inDegree(int v)
+  {
+    return inOffsets[v + 1] - inOffsets[v];
+  }
+
+  public NeighborCursor outCursor()
+  {
+    return new Cursor(offsets, targets, weights);
+  }
+
+  public NeighborCursor inCursor()
+  {
+    return new Cursor(inOffsets, inSources, inWeights);
+  }
+
+  // Walks the slice offsets[v] .. offsets[v+1]-1 of the flat arrays
+  static class Cursor implements NeighborCursor
+  {
+    final int[] offsets, targets, weights;
+    int i, end;
+
+    Cursor(int[] off, int[] tgt, int[] wts)
+    {
+      offsets = off;
+      targets = tgt;
+      weights = wts;
+    }
+
+    public void reset(int v)
+    {
+      i = offsets[v] - 1;
+      end = offsets[v + 1];
+    }
+
+    public boolean next()
+    {
+      return ++i < end;
+    }
+
+    public int target()
+    {
+      return targets[i];
+    }
+
+    public int weight()
+    {
+      return weights[i];
+    }
+  }
+
+  public int[] getOffsets()
+  {
+    return offsets;
+  }
+
+  public int[] getTargets()
+  {
+    return targets;
+  }
+
+  public int[] getWeights()
+  {
+    return weights;
+  }
+
+  public int[] getInOffsets()
+  {
+    return inOffsets;
+  }
+
+  public int[] getInSources()
+  {
+    return inSources;
+  }
+
+  public int[] getInWeights()
+  {
+    return inWeights;
+  }
+
+  // Vertices in topological order (every edge (u, v) has u before v), by
+  // Kahn's algorithm: repeatedly take a vertex with no remaining in edges.
+  // Iterative, O(V + E), and the order itself doubles as the FIFO queue.
+  // Computed once per view; the array must not be modified.
+  // Throws IllegalStateException if the graph has a cycle.
+  public int[] topologicalOrder()
+  {
+    int[] order = topoOrder;
+    if (order != null)
+      return order;
+
+    int[] remaining = new int[vertices];
+    for (int v = 0; v < vertices; v++)
+      remaining[v] = inOffsets[v + 1] - inOffsets[v];
+
+    order = new int[vertices];
+    int tail = 0;
+    for (int v = 0; v < vertices; v++)
+    {
+      if (remaining[v] == 0)
+        order[tail++] = v;
+    }
+    for (int head = 0; head < tail; head++)
+    {
+      int u = order[head];
+      for (int i = offsets[u]; i < offsets[u + 1]; i++)
+      {
+        if (--remaining[targets[i]] == 0)
+          order[tail++] = targets[i];
+      }
+    }
+    if (tail < vertices)
+      throw new IllegalStateException("Graph has a cycle through "
+                                      + (vertices - tail) + " vertices, no topological order");
+    topoOrder = order;
+    return order;
+  }
+
+  public String toString()
+  {
+    StringBuilder res = new StringBuilder("Vertices: " + vertices);
+    res.append("\nisDirected: " + isDirected);
+    res.append("\nisWeigted: " + isWeighted);
+    res.append("\nOffsets: " + Arrays.toString(offsets));
+    res.append("\nTargets: " + Arrays.toString(targets));
+    res.append("\nWeights: " + Arrays.toString(weights));
+    res.append("\n");
+    return res.toString();
+  }
+}
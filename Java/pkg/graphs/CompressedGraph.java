@@ -0,0 +1,327 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Read-only graph with compressed adjascency lists, for graphs too large to
+// keep as int arrays.
+//
+// Every vertex's neighbours are sorted and stored as the gaps between
+// consecutive targets, each gap written as a variable length integer (7 bits
+// per byte, the high bit set on all but the last byte). Neighbours of real
+// graphs are usually close to each other and to the vertex itself, so most
+// gaps fit in one or two bytes instead of the four of an int (and the ~40
+// bytes of a boxed Integer in a LinkedList).
+//
+// The list of v is laid out as
+//   varint  degree
+//   varint  zigzag(first target - v)
+//   varint  weight (zigzag)            only if weighted
+//   varint  next target - previous target
+//   varint  weight (zigzag)            only if weighted
+//   ...
+// and starts at byte offsets[v], so any list can be decoded directly, and
+// traversals decode it sequentially through a NeighborCursor. The bytes are
+// kept in pages of up to 2^30 bytes with long offsets, so the total size
+// isn't limited by the size of a Java array.
+
+public class CompressedGraph implements GraphView
+{
+  static final int PAGE_SHIFT = 30;
+  static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  final int vertices;
+  final long edges;
+  final boolean isDirected, isWeighted;
+  // Out lists, and in lists (the same object for undirected graphs)
+  final Lists out, in;
+
+  CompressedGraph(int n, long e, boolean dir, boolean wt, Lists o, Lists i)
+  {
+    vertices = n;
+    edges = e;
+    isDirected = dir;
+    isWeighted = wt;
+    out = o;
+    in = i;
+  }
+
+  // Compresses any graph (Graph, CSRGraph, MappedGraph, ...)
+  public static CompressedGraph copyOf(GraphView g)
+  {
+    int V = g.getVertices();
+    boolean wt = g.getIsWeighted();
+    Lists out = encode(g.outCursor(), V, wt);
+    Lists in = g.getIsDirected() ? encode(g.inCursor(), V, wt) : out;
+    return new CompressedGraph(V, g.getEdgeCount(), g.getIsDirected(), wt,
+                               out, in);
+  }
+
+  // The encoded lists of one direction
+  static class Lists
+  {
+    final byte[][] pages;
+    final long[] offsets;
+    final long size;
+
+    Lists(byte[][] p, long[] off, long s)
+    {
+      pages = p;
+      offsets = off;
+      size = s;
+    }
+  }
+
+  static Lists encode(NeighborCursor c, int V, boolean weighted)
+  {
+    Encoder enc = new Encoder();
+    long[] offsets = new long[V + 1];
+    int[] targets = new int[16], weights = new int[16];
+    for (int v = 0; v < V; v++)
+    {
+      int n = 0;
+      c.reset(v);
+      while (c.next())
+      {
+        if (n == targets.length)
+        {
+          targets = Arrays.copyOf(targets, 2 * n);
+          weights = Arrays.copyOf(weights, 2 * n);
+        }
+        targets[n] = c.target();
+        weights[n] = c.weight();
+        n++;
+      }
+      CSRGraph.sortSlice(targets, weights, 0, n);
+
+      offsets[v] = enc.size;
+      enc.putVarint(n);
+      int prev = v;
+      for (int i = 0; i < n; i++)
+      {
+        if (i == 0)
+          enc.putVarint(zigzag(targets[0] - v));
+        else
+          enc.putVarint(targets[i] - prev);
+        prev = targets[i];
+        if (weighted)
+          enc.putVarint(zigzag(weights[i]));
+      }
+    }
+    offsets[V] = enc.size;
+    return new Lists(enc.finish(), offsets, enc.size);
+  }
+
+  // Maps small negative and positive numbers to small unsigned ones:
+  // 0, -1, 1, -2, 2 ... become 0, 1, 2, 3, 4 ...
+  static int zigzag(int x)
+  {
+    return (x << 1) ^ (x >> 31);
+  }
+
+  static int unzigzag(int x)
+  {
+    return (x >>> 1) ^ -(x & 1);
+  }
+
+  // Appends bytes to a list of pages, growing the last page by doubling
+  static class Encoder
+  {
+    byte[][] pages = new byte[1][1024];
+    long size;
+
+    void putByte(int b)
+    {
+      int p = (int) (size >>> PAGE_SHIFT), i = (int) (size & PAGE_MASK);
+      if (p == pages.length)
+      {
+        pages = Arrays.copyOf(pages, p + 1);
+        pages[p] = new byte[1024];
+      }
+      if (i == pages[p].length)
+        pages[p] = Arrays.copyOf(pages[p], (int) Math.min(PAGE_SIZE, 2L * i));
+      pages[p][i] = (byte) b;
+      size++;
+    }
+
+    void putVarint(int x)
+    {
+      while ((x & ~0x7f) != 0)
+      {
+        putByte((x & 0x7f) | 0x80);
+        x >>>= 7;
+      }
+      putByte(x);
+    }
+
+    // Trims the last page to size
+    byte[][] finish()
+    {
+      int last = pages.length - 1;
+      pages[last] = Arrays.copyOf(pages[last], (int) (size - ((long) last << PAGE_SHIFT)));
+      return pages;
+    }
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  public long getEdgeCount()
+  {
+    return edges;
+  }
+
+  public boolean getIsDirected()
+  {
+    return isDirected;
+  }
+
+  public boolean getIsWeighted()
+  {
+    return isWeighted;
+  }
+
+  // Bytes taken by the encoded lists, both directions
+  public long sizeInBytes()
+  {
+    long res = out.size + 8L * out.offsets.length;
+    if (in != out)
+      res += in.size + 8L * in.offsets.length;
+    return res;
+  }
+
+  public int outDegree(int v)
+  {
+    return new Cursor(out, isWeighted).degree(v);
+  }
+
+  public int inDegree(int v)
+  {
+    return new Cursor(in, isWeighted).degree(v);
+  }
+
+  // Whether there is an edge from u to v. Decodes u's list up to v, which
+  // the sorted order allows to stop early.
+  public boolean hasEdge(int u, int v)
+  {
+    Cursor c = new Cursor(out, isWeighted);
+    c.reset(u);
+    while (c.next())
+    {
+      if (c.target() >= v)
+        return c.target() == v;
+    }
+    return false;
+  }
+
+  public NeighborCursor outCursor()
+  {
+    return new Cursor(out, isWeighted);
+  }
+
+  public NeighborCursor inCursor()
+  {
+    return new Cursor(in, isWeighted);
+  }
+
+  // Decodes one list sequentially, in increasing order of target
+  static class Cursor implements NeighborCursor
+  {
+    final Lists lists;
+    final boolean weighted;
+    byte[] page;
+    int pageIndex, pos;
+    int remaining, target, weight;
+    boolean first;
+
+    Cursor(Lists l, boolean wt)
+    {
+      lists = l;
+      weighted = wt;
+      weight = 1;
+    }
+
+    void seek(long offset)
+    {
+      pageIndex = (int) (offset >>> PAGE_SHIFT);
+      pos = (int) (offset & PAGE_MASK);
+      page = pageIndex < lists.pages.length ? lists.pages[pageIndex] : null;
+    }
+
+    int readByte()
+    {
+      if (pos == page.length)
+      {
+        page = lists.pages[++pageIndex];
+        pos = 0;
+      }
+      return page[pos++];
+    }
+
+    int readVarint()
+    {
+      int b = readByte();
+      if (b >= 0)
+        return b;
+      int x = b & 0x7f;
+      for (int shift = 7; ; shift += 7)
+      {
+        b = readByte();
+        x |= (b & 0x7f) << shift;
+        if (b >= 0)
+          return x;
+      }
+    }
+
+    int degree(int v)
+    {
+      seek(lists.offsets[v]);
+      return readVarint();
+    }
+
+    public void reset(int v)
+    {
+      remaining = degree(v);
+      target = v;
+      first = true;
+    }
+
+    public boolean next()
+    {
+      if (remaining == 0)
+        return false;
+      remaining--;
+      if (first)
+      {
+        target += unzigzag(readVarint());
+        first = false;
+      }
+      else
+        target += readVarint();
+      if (weighted)
+        weight = unzigzag(readVarint());
+      return true;
+    }
+
+    public int target()
+    {
+      return target;
+    }
+
+    public int weight()
+    {
+      return weight;
+    }
+  }
+
+  public String toString()
+  {
+    StringBuilder res = new StringBuilder("Vertices: " + vertices);
+    res.append("\nisDirected: " + isDirected);
+    res.append("\nisWeigted: " + isWeighted);
+    res.append("\nEdges: " + edges + " (" + sizeInBytes() + " bytes compressed)\n");
+    return res.toString();
+  }
+}
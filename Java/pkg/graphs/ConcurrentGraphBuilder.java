@@ -0,0 +1,159 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+// Builds a CSRGraph from edges added by many threads at once.
+//
+// Graph.addEdge isn't thread safe. Instead of guarding it with a lock, every
+// thread appends its edges to a buffer of its own (three int arrays), so
+// addEdge takes no lock and writes no shared memory, and ingest scales with
+// the number of producer threads. The buffers are kept in a map keyed by
+// thread rather than in a ThreadLocal, so the builder can drop them all in
+// build() and long lived producers (e.g. pool threads) don't keep them.
+//
+// build() merges the buffers into a CSR in two parallel passes over the
+// buffers (count degrees, then scatter edges into place) and sorts every
+// vertex's neighbours, so the result doesn't depend on thread scheduling.
+// It must be called once all producers are done adding (e.g. after joining
+// them); the builder can't be used afterwards.
+
+public class ConcurrentGraphBuilder
+{
+  final int vertices;
+  final boolean isDirected, isWeighted;
+  // One buffer per producer thread, registered on its first edge
+  final ConcurrentHashMap<Thread, Buffer> buffers
+                                          = new ConcurrentHashMap<Thread, Buffer>();
+  volatile boolean built;
+
+  public ConcurrentGraphBuilder(int n, boolean dir, boolean wt)
+  {
+    vertices = n;
+    isDirected = dir;
+    isWeighted = wt;
+  }
+
+  // Edges added by one thread
+  static class Buffer
+  {
+    int size;
+    int[] src = new int[1024], dest = new int[1024], wt = new int[1024];
+
+    void add(int s, int d, int w)
+    {
+      if (size == src.length)
+      {
+        src = Arrays.copyOf(src, 2 * size);
+        dest = Arrays.copyOf(dest, 2 * size);
+        wt = Arrays.copyOf(wt, 2 * size);
+      }
+      src[size] = s;
+      dest[size] = d;
+      wt[size] = w;
+      size++;
+    }
+  }
+
+  public void addEdge(int src, int dest)
+  {
+    addEdge(src, dest, 1);
+  }
+
+  // Safe to call from any number of threads at the same time
+  public void addEdge(int src, int dest, int wt)
+  {
+    if (src < 0 || src >= vertices || dest < 0 || dest >= vertices)
+      throw new IndexOutOfBoundsException("Edge (" + src + ", " + dest
+                                          + ") in a graph of " + vertices
+                                          + " vertices");
+    if (built)
+      throw new IllegalStateException("Graph has already been built");
+    Thread t = Thread.currentThread();
+    Buffer b = buffers.get(t);
+    if (b == null)
+    {
+      b = new Buffer();
+      buffers.put(t, b);
+    }
+    b.add(src, dest, wt);
+  }
+
+  public CSRGraph build()
+  {
+    Buffer[] bufs;
+    synchronized (this)
+    {
+      if (built)
+        throw new IllegalStateException("Graph has already been built");
+      built = true;
+    }
+    // The producers are done, so nothing is added to the map any more. After
+    // clearing it the buffers are only referenced from here.
+    bufs = buffers.values().toArray(new Buffer[0]);
+    buffers.clear();
+
+    int V = vertices;
+    boolean undirected = !isDirected;
+    long edges = 0;
+    for (Buffer b : bufs)
+      edges += b.size;
+
+    // Pass 1: count the entries of every vertex
+    AtomicIntegerArray degree = new AtomicIntegerArray(V + 1);
+    IntStream.range(0, bufs.length).parallel().forEach(k -> {
+      Buffer b = bufs[k];
+      for (int i = 0; i < b.size; i++)
+      {
+        degree.incrementAndGet(b.src[i] + 1);
+        if (undirected)
+          degree.incrementAndGet(b.dest[i] + 1);
+      }
+    });
+
+    int[] offsets = new int[V + 1];
+    long total = 0;
+    for (int v = 0; v < V; v++)
+    {
+      total += degree.get(v + 1);
+      if (total > Integer.MAX_VALUE - 8)
+        throw new IllegalStateException("Too many adjascency entries for CSR");
+      offsets[v + 1] = (int) total;
+    }
+
+    // Pass 2: scatter every edge into the next free slot of its vertex
+    int[] targets = new int[(int) total];
+    int[] weights = new int[(int) total];
+    AtomicIntegerArray next = new AtomicIntegerArray(offsets);
+    IntStream.range(0, bufs.length).parallel().forEach(k -> {
+      Buffer b = bufs[k];
+      for (int i = 0; i < b.size; i++)
+      {
+        int w = isWeighted ? b.wt[i] : 1;
+        int slot = next.getAndIncrement(b.src[i]);
+        targets[slot] = b.dest[i];
+        weights[slot] = w;
+        if (undirected)
+        {
+          slot = next.getAndIncrement(b.dest[i]);
+          targets[slot] = b.src[i];
+          weights[slot] = w;
+        }
+      }
+      // Free the buffer's arrays as soon as it is merged, rather than when
+      // build() returns
+      b.src = b.dest = b.wt = null;
+      b.size = 0;
+    });
+
+    IntStream.range(0, V).parallel().forEach(v ->
+      CSRGraph.sortSlice(targets, weights, offsets[v], offsets[v + 1]));
+
+    if (edges > Integer.MAX_VALUE)
+      throw new IllegalStateException("Too many edges for CSR");
+    return new CSRGraph(V, (int) edges, isDirected, isWeighted,
+                        offsets, targets, weights);
+  }
+}
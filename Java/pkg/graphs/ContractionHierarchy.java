@@ -0,0 +1,642 @@
+package pkg.graphs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Contraction Hierarchies: preprocessing of a graph with non negative edge
+// weights for fast repeated shortest path queries.
+//
+// Preprocessing contracts the vertices one by one, least important first.
+// Contracting v removes it from the graph, adding a shortcut u -> x of
+// weight w(u, v) + w(v, x) for every pair of neighbours whose shortest path
+// runs through v (checked by a bounded "witness" search from u avoiding v),
+// so the distances between the remaining vertices don't change. The order
+// in which the vertices are contracted is their rank.
+//
+// Every shortest path then has a shortest path of the same length in the
+// graph plus shortcuts which first goes up in rank and then down. A query
+// runs Dijkstra forward from s on the upward edges and backward from t on
+// the (reversed) downward edges, and the two meet at the highest vertex of
+// the path. Both searches only see a few hundred vertices even on graphs with
+// millions, and reuse their arrays, so a query costs microseconds. A vertex
+// that a more important vertex reaches with a shorter distance isn't
+// expanded (stall on demand), which roughly halves the search space.
+//
+// The importance of a vertex is its edge difference: twice the shortcuts its
+// contraction would add minus the edges it would remove, plus the number of
+// its neighbours contracted already and its level (one more than the highest
+// level among them), which spread the contraction evenly over the graph.
+// Priorities are updated lazily: a vertex whose priority has grown when it
+// comes to the top of the queue is queued again.
+//
+// The hierarchy is kept as two CSRs over one edge array: up[v] holds the
+// edges v -> x with rank[x] > rank[v] and down[v] the edges u -> v with
+// rank[u] > rank[v]. A shortcut remembers the two edges it replaces, so a
+// path is unpacked to the edges of the original graph. save() and load()
+// store the hierarchy so that it isn't rebuilt every start.
+
+public class ContractionHierarchy
+{
+  static final int INF = Integer.MAX_VALUE;
+  static final int MAGIC = 0x43485231; // "CHR1"
+  static final int VERSION = 1;
+  // Vertices a witness search may settle before assuming a shortcut is needed
+  static final int WITNESS_SETTLE_LIMIT = 500;
+  // The same when only estimating the shortcuts for a vertex's priority
+  static final int SIMULATE_SETTLE_LIMIT = 50;
+
+  final int vertices;
+  final int[] rank;
+  // Edges of the original graph and shortcuts. For a shortcut first and
+  // second are the edges it replaces, -1 for an original edge.
+  final int[] from, to, weight, first, second;
+  // Upward out edges and downward in edges of every vertex, as edge ids
+  final int[] upOffsets, upEdges, downOffsets, downEdges;
+
+  ContractionHierarchy(int n, int[] r, int[] f, int[] t, int[] w, int[] a,
+                       int[] b)
+  {
+    vertices = n;
+    rank = r;
+    from = f;
+    to = t;
+    weight = w;
+    first = a;
+    second = b;
+
+    upOffsets = new int[n + 1];
+    downOffsets = new int[n + 1];
+    for (int e = 0; e < from.length; e++)
+    {
+      if (rank[to[e]] > rank[from[e]])
+        upOffsets[from[e] + 1]++;
+      else
+        downOffsets[to[e] + 1]++;
+    }
+    for (int v = 0; v < n; v++)
+    {
+      upOffsets[v + 1] += upOffsets[v];
+      downOffsets[v + 1] += downOffsets[v];
+    }
+    upEdges = new int[upOffsets[n]];
+    downEdges = new int[downOffsets[n]];
+    int[] upNext = Arrays.copyOf(upOffsets, n);
+    int[] downNext = Arrays.copyOf(downOffsets, n);
+    for (int e = 0; e < from.length; e++)
+    {
+      if (rank[to[e]] > rank[from[e]])
+        upEdges[upNext[from[e]]++] = e;
+      else
+        downEdges[downNext[to[e]]++] = e;
+    }
+  }
+
+  // Contracts every vertex of g. Edge weights must be non negative.
+  public static ContractionHierarchy build(GraphView g)
+  {
+    return new Builder(g).build();
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  // Position of every vertex in the contraction order
+  public int[] getRank()
+  {
+    return rank;
+  }
+
+  public int getEdgeCount()
+  {
+    return from.length;
+  }
+
+  public int getShortcutCount()
+  {
+    int res = 0;
+    for (int e = 0; e < first.length; e++)
+    {
+      if (first[e] >= 0)
+        res++;
+    }
+    return res;
+  }
+
+  // A query engine with its own search state. Queries are cheap, but one
+  // Query must not be used by several threads at once; create one per
+  // thread instead, they all share the hierarchy.
+  public Query newQuery()
+  {
+    return new Query();
+  }
+
+  public class Query
+  {
+    final int[] distF = new int[vertices], distB = new int[vertices];
+    // Edge through which every vertex was reached, -1 for s and t
+    final int[] edgeF = new int[vertices], edgeB = new int[vertices];
+    final IndexedDaryHeap heapF = new IndexedDaryHeap(vertices);
+    final IndexedDaryHeap heapB = new IndexedDaryHeap(vertices);
+    // Vertices whose distances have to be reset before the next query
+    final int[] touched = new int[vertices];
+    int touchedCount;
+    int src, dest, meet, settled;
+
+    Query()
+    {
+      Arrays.fill(distF, INF);
+      Arrays.fill(distB, INF);
+      meet = -1;
+    }
+
+    // Length of the shortest path from s to t, INF if there is none
+    public int distance(int s, int t)
+    {
+      for (int i = 0; i < touchedCount; i++)
+      {
+        distF[touched[i]] = INF;
+        distB[touched[i]] = INF;
+      }
+      touchedCount = 0;
+      heapF.clear();
+      heapB.clear();
+      src = s;
+      dest = t;
+      meet = -1;
+      settled = 0;
+
+      reach(distF, edgeF, heapF, s, 0, -1);
+      reach(distB, edgeB, heapB, t, 0, -1);
+      long mu = INF;
+      while (!heapF.isEmpty() || !heapB.isEmpty())
+      {
+        // Advance the side with the nearer frontier. Once that one is as far
+        // as the best path found, no shorter one can be left.
+        boolean forward = heapB.isEmpty()
+                          || (!heapF.isEmpty() && heapF.peekKey() <= heapB.peekKey());
+        IndexedDaryHeap heap = forward ? heapF : heapB;
+        if (heap.peekKey() >= mu)
+          break;
+        int[] dist = forward ? distF : distB, other = forward ? distB : distF;
+        int[] edge = forward ? edgeF : edgeB;
+        int[] offsets = forward ? upOffsets : downOffsets;
+        int[] edges = forward ? upEdges : downEdges;
+
+        int u = heap.poll();
+        settled++;
+        if (other[u] != INF && (long) dist[u] + other[u] < mu)
+        {
+          mu = (long) dist[u] + other[u];
+          meet = u;
+        }
+        if (stalled(u, forward, dist))
+          continue;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++)
+        {
+          int e = edges[i];
+          int x = forward ? to[e] : from[e];
+          int d = dist[u] + weight[e];
+          if (d < dist[x])
+            reach(dist, edge, heap, x, d, e);
+          if (other[x] != INF && (long) dist[x] + other[x] < mu)
+          {
+            mu = (long) dist[x] + other[x];
+            meet = x;
+          }
+        }
+      }
+      return (int) mu;
+    }
+
+    // Stall on demand: u isn't expanded if a more important vertex already
+    // reached offers a shorter way to it, against the direction of the
+    // search. u's distance isn't a shortest one then, so no shortest path
+    // continues from it.
+    boolean stalled(int u, boolean forward, int[] dist)
+    {
+      int[] offsets = forward ? downOffsets : upOffsets;
+      int[] edges = forward ? downEdges : upEdges;
+      for (int i = offsets[u]; i < offsets[u + 1]; i++)
+      {
+        int e = edges[i];
+        int x = forward ? from[e] : to[e];
+        if (dist[x] != INF && dist[x] + weight[e] < dist[u])
+          return true;
+      }
+      return false;
+    }
+
+    void reach(int[] dist, int[] edge, IndexedDaryHeap heap, int v, int d,
+               int e)
+    {
+      if (distF[v] == INF && distB[v] == INF)
+        touched[touchedCount++] = v;
+      dist[v] = d;
+      edge[v] = e;
+      heap.insertOrDecrease(v, d);
+    }
+
+    // Vertices settled by the last query, over both directions
+    public int getSettled()
+    {
+      return settled;
+    }
+
+    // Shortest path of the last query in the original graph, from s to t.
+    // Empty if there is no path.
+    public int[] path()
+    {
+      if (meet < 0)
+        return new int[0];
+      // Edges from the meeting vertex back to s, then from it down to t
+      int[] edges = new int[16];
+      int n = 0, up;
+      for (int v = meet; edgeF[v] >= 0; v = from[edgeF[v]])
+      {
+        if (n == edges.length)
+          edges = Arrays.copyOf(edges, 2 * n);
+        edges[n++] = edgeF[v];
+      }
+      up = n;
+      for (int v = meet; edgeB[v] >= 0; v = to[edgeB[v]])
+      {
+        if (n == edges.length)
+          edges = Arrays.copyOf(edges, 2 * n);
+        edges[n++] = edgeB[v];
+      }
+      // Stack of edges still to unpack, arranged to pop in path order: the
+      // downward edges from t's end, then the upward ones from the meeting
+      // vertex's end
+      int[] todo = new int[n + 16];
+      int top = 0;
+      for (int i = n - 1; i >= up; i--)
+        todo[top++] = edges[i];
+      for (int i = 0; i < up; i++)
+        todo[top++] = edges[i];
+
+      int[] path = new int[16];
+      int length = 0;
+      path[length++] = src;
+      while (top > 0)
+      {
+        int e = todo[--top];
+        if (first[e] < 0)
+        {
+          if (length == path.length)
+            path = Arrays.copyOf(path, 2 * length);
+          path[length++] = to[e];
+          continue;
+        }
+        // A shortcut is its first edge followed by its second
+        if (top + 2 > todo.length)
+          todo = Arrays.copyOf(todo, 2 * todo.length);
+        todo[top++] = second[e];
+        todo[top++] = first[e];
+      }
+      return Arrays.copyOf(path, length);
+    }
+  }
+
+  // Writes the contraction order and edges; the CSRs are rebuilt by load()
+  public void save(String file) throws IOException
+  {
+    try (DataOutputStream out = new DataOutputStream(
+           new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(vertices);
+      out.writeInt(from.length);
+      for (int v = 0; v < vertices; v++)
+        out.writeInt(rank[v]);
+      for (int[] column : new int[][] {from, to, weight, first, second})
+      {
+        for (int x : column)
+          out.writeInt(x);
+      }
+    }
+  }
+
+  public static ContractionHierarchy load(String file) throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(
+           new BufferedInputStream(new FileInputStream(file), 1 << 16)))
+    {
+      if (in.readInt() != MAGIC)
+        throw new IOException(file + ": not a contraction hierarchy");
+      int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException(file + ": unsupported version " + version);
+      int n = in.readInt();
+      int e = in.readInt();
+      int[] rank = readInts(in, n);
+      int[][] columns = new int[5][];
+      for (int c = 0; c < columns.length; c++)
+        columns[c] = readInts(in, e);
+      return new ContractionHierarchy(n, rank, columns[0], columns[1],
+                                      columns[2], columns[3], columns[4]);
+    }
+  }
+
+  static int[] readInts(DataInputStream in, int n) throws IOException
+  {
+    int[] res = new int[n];
+    for (int i = 0; i < n; i++)
+      res[i] = in.readInt();
+    return res;
+  }
+
+  // Preprocessing state: the remaining graph as growable lists of edge ids
+  static class Builder
+  {
+    final int vertices;
+    // Every edge created, original or shortcut
+    int[] from, to, weight, first, second;
+    int edgeCount;
+    // Out and in edges of every vertex among the remaining vertices. Edges to
+    // contracted vertices are dropped lazily.
+    int[][] out, in;
+    int[] outDeg, inDeg;
+    boolean[] contracted;
+    // Contracted neighbours of every vertex, and its level in the hierarchy
+    int[] deleted, level;
+    // Edges of the hierarchy: the edges of every vertex to the vertices
+    // remaining when it was contracted
+    boolean[] kept;
+
+    // Witness search state. The out neighbours of the vertex being
+    // contracted are marked with the current stamp in target.
+    final int[] dist, target;
+    int stamp;
+    final int[] touched;
+    int touchedCount;
+    final IndexedDaryHeap heap;
+
+    Builder(GraphView g)
+    {
+      vertices = g.getVertices();
+      int capacity = 16;
+      from = new int[capacity];
+      to = new int[capacity];
+      weight = new int[capacity];
+      first = new int[capacity];
+      second = new int[capacity];
+      out = new int[vertices][];
+      in = new int[vertices][];
+      outDeg = new int[vertices];
+      inDeg = new int[vertices];
+      contracted = new boolean[vertices];
+      deleted = new int[vertices];
+      level = new int[vertices];
+      dist = new int[vertices];
+      touched = new int[vertices];
+      target = new int[vertices];
+      heap = new IndexedDaryHeap(vertices);
+      Arrays.fill(dist, INF);
+
+      NeighborCursor c = g.outCursor();
+      for (int v = 0; v < vertices; v++)
+      {
+        c.reset(v);
+        while (c.next())
+        {
+          if (c.weight() < 0)
+            throw new IllegalArgumentException("Negative edge weight "
+                                               + c.weight() + " on (" + v
+                                               + ", " + c.target() + ")");
+          if (c.target() != v)
+            addEdge(v, c.target(), c.weight(), -1, -1);
+        }
+      }
+    }
+
+    // Adds the edge u -> x, or shortens an existing one (parallel edges are
+    // merged)
+    void addEdge(int u, int x, int w, int a, int b)
+    {
+      for (int i = 0; i < outDeg[u]; i++)
+      {
+        int e = out[u][i];
+        if (to[e] == x)
+        {
+          if (w < weight[e])
+          {
+            weight[e] = w;
+            first[e] = a;
+            second[e] = b;
+          }
+          return;
+        }
+      }
+      if (edgeCount == from.length)
+      {
+        int n = 2 * edgeCount;
+        from = Arrays.copyOf(from, n);
+        to = Arrays.copyOf(to, n);
+        weight = Arrays.copyOf(weight, n);
+        first = Arrays.copyOf(first, n);
+        second = Arrays.copyOf(second, n);
+      }
+      int e = edgeCount++;
+      from[e] = u;
+      to[e] = x;
+      weight[e] = w;
+      first[e] = a;
+      second[e] = b;
+      out[u] = push(out[u], outDeg[u]++, e);
+      in[x] = push(in[x], inDeg[x]++, e);
+    }
+
+    static int[] push(int[] list, int n, int e)
+    {
+      if (list == null)
+        list = new int[4];
+      else if (n == list.length)
+        list = Arrays.copyOf(list, 2 * n);
+      list[n] = e;
+      return list;
+    }
+
+    // Drops the edges of v to contracted vertices
+    void prune(int v)
+    {
+      int n = 0;
+      for (int i = 0; i < outDeg[v]; i++)
+      {
+        if (!contracted[to[out[v][i]]])
+          out[v][n++] = out[v][i];
+      }
+      outDeg[v] = n;
+      n = 0;
+      for (int i = 0; i < inDeg[v]; i++)
+      {
+        if (!contracted[from[in[v][i]]])
+          in[v][n++] = in[v][i];
+      }
+      inDeg[v] = n;
+    }
+
+    ContractionHierarchy build()
+    {
+      int[] rank = new int[vertices];
+      kept = new boolean[from.length];
+      IndexedDaryHeap order = new IndexedDaryHeap(vertices);
+      for (int v = 0; v < vertices; v++)
+        order.insert(v, priority(v));
+
+      int next = 0;
+      while (!order.isEmpty())
+      {
+        int v = order.poll();
+        // Lazy update: contract v only if it is still the least important
+        int p = priority(v);
+        if (!order.isEmpty() && p > order.peekKey())
+        {
+          order.insert(v, p);
+          continue;
+        }
+        contract(v, false);
+        rank[v] = next++;
+      }
+
+      // Keep only the edges of the hierarchy, renumbered
+      int[] id = new int[edgeCount];
+      int n = 0;
+      for (int e = 0; e < edgeCount; e++)
+        id[e] = e < kept.length && kept[e] ? n++ : -1;
+      int[] f = new int[n], t = new int[n], w = new int[n];
+      int[] a = new int[n], b = new int[n];
+      for (int e = 0; e < edgeCount; e++)
+      {
+        if (id[e] < 0)
+          continue;
+        f[id[e]] = from[e];
+        t[id[e]] = to[e];
+        w[id[e]] = weight[e];
+        a[id[e]] = first[e] < 0 ? -1 : id[first[e]];
+        b[id[e]] = second[e] < 0 ? -1 : id[second[e]];
+      }
+      return new ContractionHierarchy(vertices, rank, f, t, w, a, b);
+    }
+
+    // Edge difference plus contracted neighbours and level
+    int priority(int v)
+    {
+      prune(v);
+      return 2 * contract(v, true) - outDeg[v] - inDeg[v] + deleted[v] + level[v];
+    }
+
+    // Adds the shortcuts needed to remove v, or only counts them if simulate
+    // is set. Returns the number of shortcuts.
+    int contract(int v, boolean simulate)
+    {
+      prune(v);
+      int maxOut = 0;
+      for (int j = 0; j < outDeg[v]; j++)
+        maxOut = Math.max(maxOut, weight[out[v][j]]);
+
+      // The witness searches can stop once all of v's out neighbours are
+      // settled
+      stamp++;
+      int targets = 0;
+      for (int j = 0; j < outDeg[v]; j++)
+      {
+        if (target[to[out[v][j]]] != stamp)
+        {
+          target[to[out[v][j]]] = stamp;
+          targets++;
+        }
+      }
+
+      int shortcuts = 0;
+      for (int i = 0; i < inDeg[v]; i++)
+      {
+        int a = in[v][i];
+        int u = from[a];
+        witness(u, v, weight[a] + maxOut, targets,
+                simulate ? SIMULATE_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+        for (int j = 0; j < outDeg[v]; j++)
+        {
+          int b = out[v][j];
+          int x = to[b];
+          if (x == u || dist[x] <= weight[a] + weight[b])
+            continue;
+          shortcuts++;
+          if (!simulate)
+            addEdge(u, x, weight[a] + weight[b], a, b);
+        }
+      }
+      if (simulate)
+        return shortcuts;
+
+      // The edges to the remaining vertices become part of the hierarchy
+      if (kept.length < edgeCount)
+        kept = Arrays.copyOf(kept, from.length);
+      for (int i = 0; i < inDeg[v]; i++)
+      {
+        kept[in[v][i]] = true;
+        neighbourContracted(v, from[in[v][i]]);
+      }
+      for (int j = 0; j < outDeg[v]; j++)
+      {
+        kept[out[v][j]] = true;
+        neighbourContracted(v, to[out[v][j]]);
+      }
+      contracted[v] = true;
+      return shortcuts;
+    }
+
+    void neighbourContracted(int v, int n)
+    {
+      deleted[n]++;
+      level[n] = Math.max(level[n], level[v] + 1);
+    }
+
+    // Dijkstra from u avoiding v, up to distance limit or
+    // WITNESS_SETTLE_LIMIT settled vertices. Leaves the distances in dist.
+    void witness(int u, int v, int limit, int targets, int maxSettled)
+    {
+      for (int i = 0; i < touchedCount; i++)
+        dist[touched[i]] = INF;
+      touchedCount = 0;
+      heap.clear();
+
+      dist[u] = 0;
+      touched[touchedCount++] = u;
+      heap.insert(u, 0);
+      int settled = 0;
+      while (!heap.isEmpty() && settled < maxSettled)
+      {
+        if (heap.peekKey() > limit)
+          break;
+        int y = heap.poll();
+        settled++;
+        if (target[y] == stamp && --targets == 0)
+          break;
+        for (int i = 0; i < outDeg[y]; i++)
+        {
+          int e = out[y][i];
+          int x = to[e];
+          if (x == v || contracted[x])
+            continue;
+          int d = dist[y] + weight[e];
+          if (d < dist[x])
+          {
+            if (dist[x] == INF)
+              touched[touchedCount++] = x;
+            dist[x] = d;
+            heap.insertOrDecrease(x, d);
+          }
+        }
+      }
+    }
+  }
+}
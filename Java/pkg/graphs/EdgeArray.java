@@ -0,0 +1,118 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Struct-of-arrays edge list: edge i is (src[i], dest[i], wt[i]).
+//
+// Unlike Graph.getEdgeList(), which creates one Edge object per edge on every
+// call, an EdgeArray is three int arrays that are filled once and can be
+// refilled (see Graph.getEdgeArray(EdgeArray)) without allocating.
+
+public class EdgeArray
+{
+  int size;
+  int[] src, dest, wt;
+
+  public EdgeArray()
+  {
+    this(16);
+  }
+
+  public EdgeArray(int capacity)
+  {
+    capacity = Math.max(capacity, 1);
+    src = new int[capacity];
+    dest = new int[capacity];
+    wt = new int[capacity];
+  }
+
+  public void clear()
+  {
+    size = 0;
+  }
+
+  public void add(int s, int d, int w)
+  {
+    if (size == src.length)
+    {
+      int cap = 2 * size;
+      src = Arrays.copyOf(src, cap);
+      dest = Arrays.copyOf(dest, cap);
+      wt = Arrays.copyOf(wt, cap);
+    }
+    src[size] = s;
+    dest[size] = d;
+    wt[size] = w;
+    size++;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public int getSource(int i)
+  {
+    return src[i];
+  }
+
+  public int getDestination(int i)
+  {
+    return dest[i];
+  }
+
+  public int getWeight(int i)
+  {
+    return wt[i];
+  }
+
+  // The backing arrays, valid for indices 0 .. size()-1
+  public int[] getSources()
+  {
+    return src;
+  }
+
+  public int[] getDestinations()
+  {
+    return dest;
+  }
+
+  public int[] getWeights()
+  {
+    return wt;
+  }
+
+  // Sorts the edges by non-decreasing weight. Edges of equal weight keep their
+  // order. Each (weight, index) pair is packed into a long, so this is one
+  // primitive sort and no Comparator or Edge objects are involved.
+  public void sortByWeight()
+  {
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++)
+      keys[i] = ((long) wt[i] << 32) | i;
+    Arrays.sort(keys);
+
+    int[] s = new int[src.length], d = new int[src.length];
+    for (int i = 0; i < size; i++)
+    {
+      int j = (int) keys[i];
+      s[i] = src[j];
+      d[i] = dest[j];
+      wt[i] = (int) (keys[i] >> 32);
+    }
+    src = s;
+    dest = d;
+  }
+
+  public String toString()
+  {
+    StringBuilder res = new StringBuilder("[");
+    for (int i = 0; i < size; i++)
+    {
+      res.append("(" + src[i] + ", " + dest[i] + ", " + wt[i] + ")");
+      if (i != size - 1)
+        res.append(", ");
+    }
+    return res.append("]").toString();
+  }
+}
@@ -0,0 +1,434 @@
+package pkg.graphs;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Parallel loader for text edge lists, producing a CSRGraph.
+//
+// Supported formats:
+//   SNAP           "u v" or "u v w" per line, 0-based ids, '#' comments.
+//                  Weighted if the first edge line has a third number.
+//   DIMACS         "p sp V E" problem line, "a u v w" arcs with 1-based ids,
+//                  'c' comments (9th DIMACS challenge .gr files).
+//   MATRIX_MARKET  "%%MatrixMarket matrix coordinate <field> <symmetry>"
+//                  banner, '%' comments, "rows cols nnz" size line, then
+//                  "i j [value]" entries with 1-based ids. A pattern matrix is
+//                  unweighted, real values are rounded to the nearest int and
+//                  a symmetric matrix gives an undirected graph.
+//
+// The file is memory mapped and split into chunks that end on line breaks.
+// Chunks are parsed in parallel straight from the mapped bytes, without
+// creating Strings. The CSR is built in two passes over the file:
+//   1. count the degree of every vertex, prefix sum the degrees into offsets,
+//   2. parse again and scatter every edge into its vertex's slice.
+// Each vertex's neighbours are then sorted, so the result doesn't depend on
+// how the chunks were scheduled.
+// For SNAP files without a known vertex count one more pass finds the
+// largest id first.
+
+public class EdgeListLoader
+{
+  public enum Format { SNAP, DIMACS, MATRIX_MARKET }
+
+  // Bytes per chunk, i.e. per parallel task
+  static final int CHUNK_BYTES = 32 << 20;
+
+  interface EdgeSink
+  {
+    void edge(int u, int v, int wt);
+  }
+
+  // Loads the file, taking directedness from the file where the format has it
+  // (DIMACS is directed, Matrix Market by its symmetry) and from the caller
+  // for SNAP.
+  public static CSRGraph load(String file, Format format, boolean directed)
+    throws IOException
+  {
+    return load(file, format, directed, -1);
+  }
+
+  // vertices is the number of vertices if known (-1 otherwise); it is only
+  // needed for SNAP files, where it saves a pass.
+  public static CSRGraph load(String file, Format format, boolean directed,
+                              int vertices) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel ch = raf.getChannel())
+    {
+      Header h = readHeader(ch, format, directed);
+      if (vertices >= 0)
+        h.vertices = vertices;
+      long[] bounds = split(ch, h.dataStart, ch.size());
+      try
+      {
+        return build(ch, h, bounds);
+      }
+      catch (UncheckedIOException e)
+      {
+        throw e.getCause();
+      }
+    }
+  }
+
+  // What the header says about the file
+  static class Header
+  {
+    long dataStart;
+    int vertices = -1;
+    int idBase;
+    boolean directed, weighted;
+    // First byte of an edge line (DIMACS 'a'), 0 for lines starting with a
+    // number
+    byte prefix;
+  }
+
+  static Header readHeader(FileChannel ch, Format format, boolean directed)
+    throws IOException
+  {
+    Header h = new Header();
+    h.directed = directed;
+    Lines in = new Lines(ch);
+    switch (format)
+    {
+      case SNAP:
+        // The header is just comments; peek at the first edge line to see if
+        // it carries weights.
+        for (String line = in.next(); line != null; line = in.next())
+        {
+          String t = line.trim();
+          if (t.isEmpty() || t.charAt(0) == '#')
+            continue;
+          h.weighted = t.split("\\s+").length >= 3;
+          break;
+        }
+        h.dataStart = 0;
+        break;
+
+      case DIMACS:
+        h.idBase = 1;
+        h.prefix = 'a';
+        h.directed = true;
+        h.weighted = true;
+        for (String line = in.next(); line != null; line = in.next())
+        {
+          if (line.startsWith("p"))
+          {
+            String[] f = line.trim().split("\\s+");
+            h.vertices = Integer.parseInt(f[2]);
+            break;
+          }
+        }
+        if (h.vertices < 0)
+          throw new IOException("DIMACS file has no problem line");
+        h.dataStart = 0;
+        break;
+
+      case MATRIX_MARKET:
+        h.idBase = 1;
+        String banner = in.next();
+        if (banner == null || !banner.startsWith("%%MatrixMarket"))
+          throw new IOException("Missing %%MatrixMarket banner");
+        String[] b = banner.trim().toLowerCase().split("\\s+");
+        if (b.length < 5 || !b[2].equals("coordinate"))
+          throw new IOException("Only coordinate Matrix Market files are supported");
+        h.weighted = !b[3].equals("pattern");
+        h.directed = b[4].equals("general");
+        for (String line = in.next(); line != null; line = in.next())
+        {
+          String t = line.trim();
+          if (t.isEmpty() || t.charAt(0) == '%')
+            continue;
+          String[] f = t.split("\\s+");
+          h.vertices = Math.max(Integer.parseInt(f[0]), Integer.parseInt(f[1]));
+          break;
+        }
+        if (h.vertices < 0)
+          throw new IOException("Matrix Market file has no size line");
+        // Entries start after the size line
+        h.dataStart = in.position;
+        break;
+    }
+    return h;
+  }
+
+  // Splits [start, end) into chunks of about CHUNK_BYTES that end right after
+  // a line break (or at the end of the file)
+  static long[] split(FileChannel ch, long start, long end) throws IOException
+  {
+    int n = (int) Math.max(1, (end - start + CHUNK_BYTES - 1) / CHUNK_BYTES);
+    long[] bounds = new long[n + 1];
+    bounds[0] = start;
+    bounds[n] = end;
+    ByteBuffer buf = ByteBuffer.allocate(4096);
+    for (int k = 1; k < n; k++)
+    {
+      long pos = Math.max(start + (long) k * CHUNK_BYTES, bounds[k - 1]);
+      boolean found = false;
+      while (!found && pos < end)
+      {
+        buf.clear();
+        int read = ch.read(buf, pos);
+        if (read <= 0)
+          break;
+        for (int i = 0; i < read; i++)
+        {
+          if (buf.get(i) == '\n')
+          {
+            pos += i + 1;
+            found = true;
+            break;
+          }
+        }
+        if (!found)
+          pos += read;
+      }
+      bounds[k] = Math.min(pos, end);
+    }
+    return bounds;
+  }
+
+  static CSRGraph build(FileChannel ch, Header h, long[] bounds)
+  {
+    int chunks = bounds.length - 1;
+
+    if (h.vertices < 0)
+    {
+      AtomicIntegerArray max = new AtomicIntegerArray(chunks);
+      IntStream.range(0, chunks).parallel().forEach(k -> {
+        int[] m = {-1};
+        parse(ch, h, bounds[k], bounds[k + 1],
+              (u, v, wt) -> m[0] = Math.max(m[0], Math.max(u, v)));
+        max.set(k, m[0]);
+      });
+      int V = 0;
+      for (int k = 0; k < chunks; k++)
+        V = Math.max(V, max.get(k) + 1);
+      h.vertices = V;
+    }
+
+    int V = h.vertices;
+    boolean undirected = !h.directed;
+
+    // Pass 1: degrees
+    AtomicIntegerArray degree = new AtomicIntegerArray(V + 1);
+    AtomicLong edges = new AtomicLong();
+    IntStream.range(0, chunks).parallel().forEach(k -> {
+      long[] count = {0};
+      parse(ch, h, bounds[k], bounds[k + 1], (u, v, wt) -> {
+        degree.incrementAndGet(u + 1);
+        if (undirected)
+          degree.incrementAndGet(v + 1);
+        count[0]++;
+      });
+      edges.addAndGet(count[0]);
+    });
+
+    int[] offsets = new int[V + 1];
+    long total = 0;
+    for (int v = 0; v < V; v++)
+    {
+      total += degree.get(v + 1);
+      if (total > Integer.MAX_VALUE - 8)
+        throw new IllegalStateException("Too many adjascency entries for CSR");
+      offsets[v + 1] = (int) total;
+    }
+
+    // Pass 2: fill. next[v] is the next free slot of vertex v.
+    int[] targets = new int[(int) total];
+    int[] weights = new int[(int) total];
+    AtomicIntegerArray next = new AtomicIntegerArray(offsets);
+    IntStream.range(0, chunks).parallel().forEach(k ->
+      parse(ch, h, bounds[k], bounds[k + 1], (u, v, wt) -> {
+        int slot = next.getAndIncrement(u);
+        targets[slot] = v;
+        weights[slot] = wt;
+        if (undirected)
+        {
+          slot = next.getAndIncrement(v);
+          targets[slot] = u;
+          weights[slot] = wt;
+        }
+      }));
+
+    IntStream.range(0, V).parallel().forEach(v ->
+      CSRGraph.sortSlice(targets, weights, offsets[v], offsets[v + 1]));
+
+    if (edges.get() > Integer.MAX_VALUE)
+      throw new IllegalStateException("Too many edges for CSR");
+    return new CSRGraph(V, (int) edges.get(), h.directed, h.weighted,
+                        offsets, targets, weights);
+  }
+
+  // Parses the edge lines in [start, end) of the file. An edge with a vertex
+  // id out of range throws an UncheckedIOException naming its byte offset.
+  static void parse(FileChannel ch, Header h, long start, long end,
+                    EdgeSink sink)
+  {
+    if (end <= start)
+      return;
+    MappedByteBuffer buf;
+    try
+    {
+      buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+
+    int n = buf.limit();
+    int[] nums = new int[3];
+    int i = 0;
+    while (i < n)
+    {
+      int lineStart = i;
+      // Skip leading blanks
+      byte c = buf.get(i);
+      while ((c == ' ' || c == '\t' || c == '\r') && ++i < n)
+        c = buf.get(i);
+      if (i >= n)
+        break;
+
+      boolean edgeLine;
+      if (h.prefix != 0)
+      {
+        edgeLine = c == h.prefix;
+        if (edgeLine)
+          i++;
+      }
+      else
+        edgeLine = (c >= '0' && c <= '9') || c == '-' || c == '+';
+
+      if (edgeLine)
+      {
+        int count = 0;
+        while (i < n && buf.get(i) != '\n')
+        {
+          c = buf.get(i);
+          if (c == ' ' || c == '\t' || c == '\r' || c == ',')
+          {
+            i++;
+            continue;
+          }
+          // Parse one number: sign, digits, optional fraction and exponent
+          boolean neg = false;
+          if (c == '-' || c == '+')
+          {
+            neg = c == '-';
+            i++;
+          }
+          long whole = 0;
+          while (i < n && (c = buf.get(i)) >= '0' && c <= '9')
+          {
+            whole = whole * 10 + (c - '0');
+            i++;
+          }
+          double value = whole;
+          boolean real = false;
+          if (i < n && buf.get(i) == '.')
+          {
+            real = true;
+            double scale = 0.1;
+            i++;
+            while (i < n && (c = buf.get(i)) >= '0' && c <= '9')
+            {
+              value += (c - '0') * scale;
+              scale /= 10;
+              i++;
+            }
+          }
+          if (i < n && ((c = buf.get(i)) == 'e' || c == 'E'))
+          {
+            real = true;
+            i++;
+            boolean eneg = false;
+            if (i < n && ((c = buf.get(i)) == '-' || c == '+'))
+            {
+              eneg = c == '-';
+              i++;
+            }
+            int exp = 0;
+            while (i < n && (c = buf.get(i)) >= '0' && c <= '9')
+            {
+              exp = exp * 10 + (c - '0');
+              i++;
+            }
+            value *= Math.pow(10, eneg ? -exp : exp);
+          }
+          // Anything else on the line (e.g. an imaginary part) is ignored
+          while (i < n && (c = buf.get(i)) != '\n' && c != ' ' && c != '\t')
+            i++;
+          if (count < 3)
+          {
+            long x = real ? Math.round(value) : whole;
+            nums[count] = (int) (neg ? -x : x);
+          }
+          count++;
+        }
+        if (count >= 2)
+        {
+          int u = nums[0] - h.idBase;
+          int v = nums[1] - h.idBase;
+          int wt = (h.weighted && count >= 3) ? nums[2] : 1;
+          // Before the vertex count is known only negative ids can be told
+          // apart, e.g. a 0 in a file of 1-based ids
+          if (u < 0 || v < 0 || (h.vertices >= 0 && (u >= h.vertices || v >= h.vertices)))
+            throw new UncheckedIOException(new IOException(
+              "Edge (" + nums[0] + ", " + nums[1] + ") at byte " + (start + lineStart)
+              + (h.vertices >= 0
+                 ? " has a vertex id outside " + h.idBase + " .. " + (h.vertices - 1 + h.idBase)
+                 : " has a vertex id below " + h.idBase)));
+          sink.edge(u, v, wt);
+        }
+      }
+      // Move past the end of the line
+      while (i < n && buf.get(i) != '\n')
+        i++;
+      i++;
+    }
+  }
+
+  // Reads whole lines from the start of a file, used for the (short) headers
+  static class Lines
+  {
+    final FileChannel ch;
+    final ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    long position;
+
+    Lines(FileChannel c)
+    {
+      ch = c;
+    }
+
+    // Returns the next line (without its line break), or null at the end
+    String next() throws IOException
+    {
+      StringBuilder line = new StringBuilder();
+      while (true)
+      {
+        buf.clear();
+        int read = ch.read(buf, position);
+        if (read <= 0)
+          return line.length() == 0 ? null : line.toString();
+        for (int i = 0; i < read; i++)
+        {
+          byte c = buf.get(i);
+          if (c == '\n')
+          {
+            position += i + 1;
+            return line.toString();
+          }
+          line.append((char) c);
+        }
+        position += read;
+      }
+    }
+  }
+}
@@ -2,19 +2,41 @@ package pkg.graphs;
 
 import java.util.LinkedList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
-public class Graph
+public class Graph implements GraphView
 {
-  int vertices, edges;
+  int vertices;
+  // Number of edges, as a long so that it can't overflow on huge graphs
+  long edges;
   boolean isDirected, isWeighted;
-  // Adjeascency List for complete Graph
-  ArrayList<LinkedList<Integer>> adjList;
-  // Indegree and Outdegree for all vertices of Graph
-  ArrayList<ArrayList<Integer>> inList, outList;
-  // Weights for all edges (MAP) of all vertices(LIST) of Graph
-  ArrayList<HashMap<Integer, Integer>> wtList;
+  // Adjascency List for complete Graph, one growable int array per vertex.
+  // Weights are kept index aligned with the targets, i.e. adjWts[v][i] is the
+  // weight of the edge to adj[v][i], so parallel edges keep their own weight.
+  // The first outDeg[v] entries of adj[v] and adjWts[v] are in use.
+  // Unweighted graphs keep no weights at all (adjWts is null), every edge
+  // has weight 1.
+  int[][] adj, adjWts;
+  int[] outDeg;
+  // In edges of every vertex, in the same layout.
+  // Only kept for directed graphs, as an undirected graph's in edges are its
+  // out edges.
+  int[][] radj, radjWts;
+  int[] inDeg;
+  // Length of a vertex's arrays when its first edge is added
+  int initialCapacity;
+  // Incremented on every modification, lets callers tell whether anything
+  // they derived from the Graph is still current
+  long version;
+  // Cached CSR snapshot, dropped whenever the Graph is modified
+  CSRGraph frozen;
+  // Cached collection views for getAdjList(), getInList(), getOutList() and
+  // getWtList(), dropped whenever the Graph is modified
+  ArrayList<LinkedList<Integer>> adjListView;
+  ArrayList<ArrayList<Integer>> inListView, outListView;
+  ArrayList<HashMap<Integer, Integer>> wtListView;
 
   public Graph()
   {
@@ -37,34 +59,44 @@ public class Graph
   }
 
   public Graph(int n, boolean dir, boolean wt)
+  {
+    this(n, dir, wt, -1);
+  }
+
+  // expectedEdges is a hint for the number of edges that will be added
+  // (-1 if unknown). Memory is only ever reserved in proportion to V and to
+  // the edges actually added, never to the V^2 edges a graph could have.
+  public Graph(int n, boolean dir, boolean wt, long expectedEdges)
   {
     vertices = n;
     isDirected = dir;
     isWeighted = wt;
     edges = 0;
-    adjList = new ArrayList<LinkedList<Integer>>(n);
-    wtList = new ArrayList<HashMap<Integer, Integer>>();
-    // In a Directed Graph, the max number of edges can be either
-    //                      V(V-1) if there exists no self edge
-    //                   or V^2    if there are self edges
-    // In an Undirected Graph, the max number of edges is V(V-1)/2
-    if (isDirected == true)
-    {
-      // Assuming Self Edges are allowed
-      inList = new ArrayList<ArrayList<Integer>>(vertices * vertices);
-      outList = new ArrayList<ArrayList<Integer>>(vertices * vertices);
+    // Size every list for the average degree, so that a graph that is built
+    // with an accurate hint rarely has to grow a list.
+    initialCapacity = 4;
+    if (expectedEdges > 0 && n > 0)
+    {
+      // An undirected edge is stored in the lists of both of its vertices
+      long entries = isDirected ? expectedEdges : 2 * expectedEdges;
+      long avgDegree = (entries + n - 1) / n;
+      initialCapacity = (int) Math.max(1, Math.min(avgDegree, 1 << 20));
     }
-    else
+    // The per vertex arrays are allocated on the first edge of that vertex
+    adj = new int[vertices][];
+    adjWts = isWeighted ? new int[vertices][] : null;
+    outDeg = new int[vertices];
+    if (isDirected)
     {
-      inList = new ArrayList<ArrayList<Integer>>((vertices * (vertices-1))/2);
-      outList = new ArrayList<ArrayList<Integer>>((vertices * (vertices-1))/2);
+      radj = new int[vertices][];
+      radjWts = isWeighted ? new int[vertices][] : null;
+      inDeg = new int[vertices];
     }
-    for (int i = 0; i<vertices; i++)
+    else
     {
-      adjList.add(new LinkedList<Integer>());
-      inList.add(new ArrayList<Integer>());
-      outList.add(new ArrayList<Integer>());
-      wtList.add(new HashMap<Integer, Integer>());
+      radj = adj;
+      radjWts = adjWts;
+      inDeg = outDeg;
     }
   }
 
@@ -78,101 +110,464 @@ public class Graph
     return isWeighted;
   }
 
+  // Makes room for extra more entries in the list of vertex v
+  void ensureCapacity(int[][] list, int[][] wts, int[] deg, int v, int extra)
+  {
+    int needed = deg[v] + extra;
+    if (list[v] == null)
+    {
+      int cap = Math.max(initialCapacity, needed);
+      list[v] = new int[cap];
+      if (wts != null)
+        wts[v] = new int[cap];
+    }
+    else if (needed > list[v].length)
+    {
+      int cap = (int) Math.min(Math.max(2L * list[v].length, needed),
+                               Integer.MAX_VALUE - 8);
+      list[v] = Arrays.copyOf(list[v], cap);
+      if (wts != null)
+        wts[v] = Arrays.copyOf(wts[v], cap);
+    }
+  }
+
+  // Appends (dest, wt) to the list of vertex src, growing it when full
+  void append(int[][] list, int[][] wts, int[] deg, int src, int dest, int wt)
+  {
+    int n = deg[src];
+    if (list[src] == null || n == list[src].length)
+      ensureCapacity(list, wts, deg, src, 1);
+    list[src][n] = dest;
+    if (wts != null)
+      wts[src][n] = wt;
+    deg[src] = n + 1;
+  }
+
+  public void addEdge(int src, int dest)
+  {
+    addEdge(src, dest, 1);
+  }
+
+  public void addEdge(int src, int dest, int wt)
+  {
+    append(adj, adjWts, outDeg, src, dest, wt);
+    if (isDirected == false)
+      append(adj, adjWts, outDeg, dest, src, wt);
+    else
+      append(radj, radjWts, inDeg, dest, src, wt);
+    edges++;
+    modified();
+  }
+
+  // Adds the edges (src[i], dest[i], wt[i]) for every i. wt may be null, in
+  // which case every edge has weight 1.
+  // The degree gained by every vertex is counted first, so each list is
+  // grown at most once for the whole batch instead of doubling repeatedly.
+  public void addEdges(int[] src, int[] dest, int[] wt)
+  {
+    int n = src.length;
+    if (dest.length != n || (wt != null && wt.length != n))
+      throw new IllegalArgumentException("Edge arrays differ in length");
+
+    // Counting costs O(V) scratch space, so small batches are added one by one
+    if (n < vertices / 8)
+    {
+      for (int i = 0; i < n; i++)
+        addEdge(src[i], dest[i], wt == null ? 1 : wt[i]);
+      return;
+    }
+
+    int[] gainOut = new int[vertices];
+    int[] gainIn = isDirected ? new int[vertices] : gainOut;
+    for (int i = 0; i < n; i++)
+    {
+      gainOut[src[i]]++;
+      gainIn[dest[i]]++;
+    }
+    for (int v = 0; v < vertices; v++)
+    {
+      if (gainOut[v] > 0)
+        ensureCapacity(adj, adjWts, outDeg, v, gainOut[v]);
+      if (isDirected && gainIn[v] > 0)
+        ensureCapacity(radj, radjWts, inDeg, v, gainIn[v]);
+    }
+
+    for (int i = 0; i < n; i++)
+    {
+      int w = wt == null ? 1 : wt[i];
+      append(adj, adjWts, outDeg, src[i], dest[i], w);
+      if (isDirected == false)
+        append(adj, adjWts, outDeg, dest[i], src[i], w);
+      else
+        append(radj, radjWts, inDeg, dest[i], src[i], w);
+    }
+    edges += n;
+    modified();
+  }
+
+  // Drops everything derived from the adjascency lists
+  void modified()
+  {
+    version++;
+    frozen = null;
+    adjListView = null;
+    inListView = null;
+    outListView = null;
+    wtListView = null;
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  public long getVersion()
+  {
+    return version;
+  }
+
+  // Throws ArithmeticException if there are more than Integer.MAX_VALUE edges,
+  // use getEdgeCount() for such graphs.
+  public int getEdges()
+  {
+    return Math.toIntExact(edges);
+  }
+
+  public long getEdgeCount()
+  {
+    return edges;
+  }
+
+  public int outDegree(int v)
+  {
+    return outDeg[v];
+  }
+
+  public int inDegree(int v)
+  {
+    return inDeg[v];
+  }
+
+  public NeighborCursor outCursor()
+  {
+    return new Cursor(adj, adjWts, outDeg);
+  }
+
+  public NeighborCursor inCursor()
+  {
+    return new Cursor(radj, radjWts, inDeg);
+  }
+
+  // Walks the first deg[v] entries of list[v] and wts[v]
+  static class Cursor implements NeighborCursor
+  {
+    final int[][] list, wts;
+    final int[] deg;
+    int[] curList, curWts;
+    int i, end;
+
+    Cursor(int[][] l, int[][] w, int[] d)
+    {
+      list = l;
+      wts = w;
+      deg = d;
+    }
+
+    public void reset(int v)
+    {
+      curList = list[v];
+      curWts = wts == null ? null : wts[v];
+      i = -1;
+      end = deg[v];
+    }
+
+    public boolean next()
+    {
+      return ++i < end;
+    }
+
+    public int target()
+    {
+      return curList[i];
+    }
+
+    public int weight()
+    {
+      return curWts == null ? 1 : curWts[i];
+    }
+  }
+
+  // The list getters below are views built on demand from the int arrays for
+  // code written against the collection API. They are cached until the Graph
+  // is modified and shared by all callers, so they are read-only: changing
+  // them throws UnsupportedOperationException (see ReadOnlyViews). Change
+  // the Graph, or copy a view first.
+  // Prefer outCursor()/inCursor() or freeze() in hot loops.
+
+  public ArrayList<LinkedList<Integer>> getAdjList()
+  {
+    if (adjListView == null)
+    {
+      ReadOnlyViews.ArrayListView<LinkedList<Integer>> view
+        = new ReadOnlyViews.ArrayListView<LinkedList<Integer>>(vertices);
+      for (int i = 0; i < vertices; i++)
+      {
+        ReadOnlyViews.LinkedListView<Integer> list
+          = new ReadOnlyViews.LinkedListView<Integer>();
+        for (int j = 0; j < outDeg[i]; j++)
+          list.add(adj[i][j]);
+        view.add(list.seal());
+      }
+      adjListView = view.seal();
+    }
+    return adjListView;
+  }
+
   public ArrayList<ArrayList<Integer>> getInList()
   {
-    return inList;
+    if (inListView == null)
+      inListView = listView(radj, inDeg);
+    return inListView;
   }
 
   public ArrayList<ArrayList<Integer>> getOutList()
   {
-    return outList;
+    if (outListView == null)
+      outListView = listView(adj, outDeg);
+    return outListView;
   }
 
-  public void setAdjList(ArrayList<LinkedList<Integer>> list)
+  static ArrayList<ArrayList<Integer>> listView(int[][] list, int[] deg)
   {
-    adjList = list;
+    ReadOnlyViews.ArrayListView<ArrayList<Integer>> view
+      = new ReadOnlyViews.ArrayListView<ArrayList<Integer>>(deg.length);
+    for (int i = 0; i < deg.length; i++)
+    {
+      ReadOnlyViews.ArrayListView<Integer> l
+        = new ReadOnlyViews.ArrayListView<Integer>(deg[i]);
+      for (int j = 0; j < deg[i]; j++)
+        l.add(list[i][j]);
+      view.add(l.seal());
+    }
+    return view.seal();
   }
 
-  public void setInList(ArrayList<ArrayList<Integer>> list)
+  // Weights for all edges (MAP) of all vertices(LIST) of Graph.
+  // A map can only hold one weight per pair, so for parallel edges the weight
+  // of the last one added is returned.
+  public ArrayList<HashMap<Integer, Integer>> getWtList()
   {
-    inList = list;
+    if (wtListView == null)
+    {
+      ReadOnlyViews.ArrayListView<HashMap<Integer, Integer>> view
+        = new ReadOnlyViews.ArrayListView<HashMap<Integer, Integer>>(vertices);
+      for (int i = 0; i < vertices; i++)
+      {
+        ReadOnlyViews.HashMapView<Integer, Integer> map
+          = new ReadOnlyViews.HashMapView<Integer, Integer>();
+        for (int j = 0; j < outDeg[i]; j++)
+          map.put(adj[i][j], isWeighted ? adjWts[i][j] : 1);
+        view.add(map.seal());
+      }
+      wtListView = view.seal();
+    }
+    return wtListView;
   }
 
-  public void setOutList(ArrayList<ArrayList<Integer>> list)
+  // The setters below replace the edges of the Graph with the ones in the
+  // lists, in the layout of the getters, and rebuild the int arrays from them.
+  // An undirected edge must be listed from both of its ends.
+
+  // Out edges of every vertex, list.get(v) being the targets of v. Edges
+  // that were already in the Graph keep their weight, new ones weigh 1.
+  public void setAdjList(ArrayList<LinkedList<Integer>> list)
   {
-    outList = list;
+    setOut(list);
   }
 
-  public void setWtList(ArrayList<HashMap<Integer, Integer>> list)
+  public void setOutList(ArrayList<ArrayList<Integer>> list)
   {
-    wtList = list;
+    setOut(list);
   }
 
-  public void addEdge(int src, int dest)
+  // In edges of every vertex, list.get(v) being the sources of edges into v.
+  // The same as setOutList() for an undirected Graph.
+  public void setInList(ArrayList<ArrayList<Integer>> list)
   {
-    addEdge(src, dest, 1);
+    if (!isDirected)
+    {
+      setOut(list);
+      return;
+    }
+    checkSize(list);
+    ArrayList<HashMap<Integer, Integer>> oldWts = isWeighted ? getWtList() : null;
+    long entries = 0;
+    int[][] in = new int[vertices][], inWts = isWeighted ? new int[vertices][] : null;
+    int[] deg = new int[vertices];
+    for (int v = 0; v < vertices; v++)
+    {
+      List<Integer> l = list.get(v);
+      deg[v] = l.size();
+      entries += deg[v];
+      if (deg[v] == 0)
+        continue;
+      in[v] = new int[deg[v]];
+      if (isWeighted)
+        inWts[v] = new int[deg[v]];
+      int j = 0;
+      for (int u : l)
+      {
+        checkVertex(u);
+        if (isWeighted)
+          inWts[v][j] = oldWts.get(u).getOrDefault(v, 1);
+        in[v][j++] = u;
+      }
+    }
+    radj = in;
+    radjWts = inWts;
+    inDeg = deg;
+    adj = new int[vertices][];
+    adjWts = isWeighted ? new int[vertices][] : null;
+    outDeg = new int[vertices];
+    transpose(radj, radjWts, inDeg, adj, adjWts, outDeg);
+    edges = entries;
+    modified();
   }
 
-  public void addEdge(int src, int dest, int wt)
+  // Weights of the out edges of every vertex, list.get(u).get(v) being the
+  // weight of (u, v). Edges missing from the maps keep their weight. As a
+  // map holds one weight per pair, parallel edges all get the same one.
+  public void setWtList(ArrayList<HashMap<Integer, Integer>> list)
   {
-    if (isDirected == false)
+    if (!isWeighted)
+      throw new IllegalStateException("Graph is unweighted, every edge weighs 1");
+    checkSize(list);
+    for (int u = 0; u < vertices; u++)
     {
-      // For Adjascency Lists
-      adjList.get(src).add(dest);
-      adjList.get(dest).add(src);
-      // For Edges
-      outList.get(dest).add(src);
-      outList.get(src).add(dest);
-      inList.get(dest).add(src);
-      inList.get(src).add(dest);
-      // For Weights
-      wtList.get(src).put(dest, wt);
-      wtList.get(dest).put(src, wt);
+      HashMap<Integer, Integer> map = list.get(u);
+      for (int k = 0; k < outDeg[u]; k++)
+      {
+        Integer w = map.get(adj[u][k]);
+        if (w != null)
+          adjWts[u][k] = w;
+      }
     }
-    else
+    if (isDirected)
     {
-      // For Adjascency List
-      adjList.get(src).add(dest);
-      // For Edges
-      outList.get(src).add(dest);
-      inList.get(dest).add(src);
-      // For Weights
-      wtList.get(src).put(dest, wt);
+      radj = new int[vertices][];
+      radjWts = new int[vertices][];
+      inDeg = new int[vertices];
+      transpose(adj, adjWts, outDeg, radj, radjWts, inDeg);
     }
-    edges++;
+    modified();
   }
 
-  public int getVertices()
+  void setOut(List<? extends List<Integer>> list)
   {
-    return vertices;
+    checkSize(list);
+    ArrayList<HashMap<Integer, Integer>> oldWts = isWeighted ? getWtList() : null;
+    long entries = 0;
+    int[][] out = new int[vertices][], outWts = isWeighted ? new int[vertices][] : null;
+    int[] deg = new int[vertices];
+    for (int u = 0; u < vertices; u++)
+    {
+      List<Integer> l = list.get(u);
+      deg[u] = l.size();
+      entries += deg[u];
+      if (deg[u] == 0)
+        continue;
+      out[u] = new int[deg[u]];
+      if (isWeighted)
+        outWts[u] = new int[deg[u]];
+      int j = 0;
+      for (int v : l)
+      {
+        checkVertex(v);
+        if (isWeighted)
+          outWts[u][j] = oldWts.get(u).getOrDefault(v, 1);
+        out[u][j++] = v;
+      }
+    }
+    adj = out;
+    adjWts = outWts;
+    outDeg = deg;
+    if (isDirected)
+    {
+      radj = new int[vertices][];
+      radjWts = isWeighted ? new int[vertices][] : null;
+      inDeg = new int[vertices];
+      transpose(adj, adjWts, outDeg, radj, radjWts, inDeg);
+      edges = entries;
+    }
+    else
+    {
+      radj = adj;
+      radjWts = adjWts;
+      inDeg = outDeg;
+      // Every edge is listed from both ends (a self loop twice in its list)
+      edges = entries / 2;
+    }
+    modified();
   }
 
-  public int getEdges()
+  void checkSize(List<?> list)
   {
-    return edges;
+    if (list.size() != vertices)
+      throw new IllegalArgumentException("List of " + list.size()
+                                         + " vertices for a Graph of " + vertices);
   }
 
-  public ArrayList<LinkedList<Integer>> getAdjList()
+  void checkVertex(int v)
   {
-    return adjList;
+    if (v < 0 || v >= vertices)
+      throw new IllegalArgumentException("Vertex " + v + " not in a Graph of "
+                                         + vertices);
   }
 
-  public ArrayList<HashMap<Integer, Integer>> getWtList()
+  // Fills the empty lists to (sized deg) with the reverse of the edges in
+  // from, i.e. v -> u for every u -> v, sized exactly
+  static void transpose(int[][] from, int[][] fromWts, int[] fromDeg,
+                        int[][] to, int[][] toWts, int[] toDeg)
   {
-    return wtList;
+    int n = fromDeg.length;
+    int[] count = new int[n];
+    for (int u = 0; u < n; u++)
+    {
+      for (int k = 0; k < fromDeg[u]; k++)
+        count[from[u][k]]++;
+    }
+    for (int v = 0; v < n; v++)
+    {
+      if (count[v] == 0)
+        continue;
+      to[v] = new int[count[v]];
+      if (toWts != null)
+        toWts[v] = new int[count[v]];
+    }
+    for (int u = 0; u < n; u++)
+    {
+      for (int k = 0; k < fromDeg[u]; k++)
+      {
+        int v = from[u][k];
+        if (toWts != null)
+          toWts[v][toDeg[v]] = fromWts[u][k];
+        to[v][toDeg[v]++] = u;
+      }
+    }
   }
 
   public ArrayList<Edge> getEdgeList()
   {
-    ArrayList<Edge> edgesList = new ArrayList<Edge>(edges);
+    ArrayList<Edge> edgesList = new ArrayList<Edge>(getEdges());
     for (int i = 0; i < vertices; i++)
     {
-      for (Integer j : adjList.get(i))
+      for (int k = 0; k < outDeg[i]; k++)
       {
+        int j = adj[i][k];
         // We are assuming weight of each edge is 1 if the edges are unweighted
         int wt = 1;
         if (isWeighted)
-          wt = wtList.get(i).get(j);
+          wt = adjWts[i][k];
 
         if (isDirected)
           edgesList.add(new Edge(i, j, wt));
@@ -186,6 +581,86 @@ public class Graph
     return edgesList;
   }
 
+  // Calls action.accept(src, dest, wt) for every edge, in the same order as
+  // getEdgeList() but without creating any objects. An undirected edge is
+  // reported once.
+  public void forEachEdge(IntTriConsumer action)
+  {
+    for (int i = 0; i < vertices; i++)
+    {
+      for (int k = 0; k < outDeg[i]; k++)
+      {
+        int j = adj[i][k];
+        if (isDirected || i < j)
+          action.accept(i, j, isWeighted ? adjWts[i][k] : 1);
+      }
+    }
+  }
+
+  // Returns all edges as an EdgeArray, refilling (and if needed growing) the
+  // given one so that repeated calls don't allocate. edges may be null.
+  public EdgeArray getEdgeArray(EdgeArray edges)
+  {
+    if (edges == null)
+      edges = new EdgeArray((int) Math.min(this.edges, Integer.MAX_VALUE - 8));
+    edges.clear();
+    for (int i = 0; i < vertices; i++)
+    {
+      for (int k = 0; k < outDeg[i]; k++)
+      {
+        int j = adj[i][k];
+        if (isDirected || i < j)
+          edges.add(i, j, isWeighted ? adjWts[i][k] : 1);
+      }
+    }
+    return edges;
+  }
+
+  // Returns a read-only CSR (Compressed Sparse Row) view of the Graph.
+  // Neighbours keep the order of the adjascency list.
+  // The view is cached, so repeated calls are free until the Graph changes.
+  public CSRGraph freeze()
+  {
+    if (frozen != null)
+      return frozen;
+
+    // CSRGraph is indexed by int, so all adjascency entries must fit in one
+    // array
+    long entries = 0;
+    for (int i = 0; i < vertices; i++)
+      entries += outDeg[i];
+    if (entries > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Graph has " + entries
+                                      + " adjascency entries, too many for CSR");
+
+    int[] offsets = new int[vertices + 1];
+    for (int i = 0; i < vertices; i++)
+      offsets[i + 1] = offsets[i] + outDeg[i];
+
+    int[] targets = new int[offsets[vertices]];
+    int[] weights = new int[offsets[vertices]];
+    for (int i = 0; i < vertices; i++)
+    {
+      if (outDeg[i] == 0)
+        continue;
+      System.arraycopy(adj[i], 0, targets, offsets[i], outDeg[i]);
+      if (isWeighted)
+        System.arraycopy(adjWts[i], 0, weights, offsets[i], outDeg[i]);
+      else
+        Arrays.fill(weights, offsets[i], offsets[i + 1], 1);
+    }
+    frozen = new CSRGraph(vertices, getEdges(), isDirected, isWeighted,
+                          offsets, targets, weights);
+    return frozen;
+  }
+
+  // Vertices in topological order, see CSRGraph.topologicalOrder(). Cached
+  // with the CSR view, so it is only recomputed after the Graph changes.
+  public int[] topologicalOrder()
+  {
+    return freeze().topologicalOrder();
+  }
+
   public String toString()
   {
     StringBuilder res = new StringBuilder("Vertices: ");
@@ -197,12 +672,10 @@ public class Graph
     for (int i=0; i<vertices; i++)
     {
       res.append("Adjascency List of vertex " +  i + " : ");
-      int no = 0;
-      for (Integer j: adjList.get(i))
+      for (int j = 0; j < outDeg[i]; j++)
       {
-        no++;
-        res.append(j + "(" + wtList.get(i).get(j) + ")");
-        if (no != adjList.get(i).size())
+        res.append(adj[i][j] + "(" + (isWeighted ? adjWts[i][j] : 1) + ")");
+        if (j != outDeg[i] - 1)
           res.append(", ");
       }
       res.append("\n");
@@ -0,0 +1,252 @@
+package pkg.graphs;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Compact binary file format for graphs, read back through memory mapping.
+//
+// The file holds the graph in CSR (Compressed Sparse Row) layout, so opening
+// it only maps the file: there is no parsing and no per edge work, and the
+// OS pages the adjascency in on first use. Startup is O(1) in the size of the
+// graph, and the mapped file can be shared by every process on the machine.
+//
+// Layout (little endian, every section starts 8-byte aligned):
+//   Header, HEADER_SIZE bytes
+//     int  MAGIC
+//     int  VERSION
+//     int  flags (DIRECTED | WEIGHTED)
+//     int  vertices (V)
+//     long edges (as reported by getEdgeCount())
+//     long entries (E', number of adjascency entries, 2*edges if undirected)
+//   long[V+1] offsets        out edges of v are entries offsets[v]..offsets[v+1]-1
+//   int[E']   targets
+//   int[E']   weights        only if WEIGHTED
+//   and only if DIRECTED, the reverse CSR of the in edges:
+//   long[V+1] inOffsets
+//   int[E']   inSources
+//   int[E']   inWeights      only if WEIGHTED
+//
+// Offsets are longs, so a file can hold more than 2^31 adjascency entries.
+
+public class GraphFile
+{
+  static final int MAGIC = 0x47524631; // "GRF1"
+  static final int VERSION = 1;
+  static final int DIRECTED = 1;
+  static final int WEIGHTED = 2;
+  static final int HEADER_SIZE = 64;
+
+  // Writes any graph (Graph, CSRGraph, ...) to the given file
+  public static void write(GraphView g, String file) throws IOException
+  {
+    int V = g.getVertices();
+    NeighborCursor out = g.outCursor();
+    long entries = 0;
+    for (int v = 0; v < V; v++)
+    {
+      out.reset(v);
+      while (out.next())
+        entries++;
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+         FileChannel ch = raf.getChannel())
+    {
+      ch.truncate(0);
+      Writer w = new Writer(ch);
+      w.putInt(MAGIC);
+      w.putInt(VERSION);
+      w.putInt((g.getIsDirected() ? DIRECTED : 0)
+               | (g.getIsWeighted() ? WEIGHTED : 0));
+      w.putInt(V);
+      w.putLong(g.getEdgeCount());
+      w.putLong(entries);
+      w.pad(HEADER_SIZE);
+
+      writeCSR(w, out, V, g.getIsWeighted());
+      if (g.getIsDirected())
+        writeCSR(w, g.inCursor(), V, g.getIsWeighted());
+      w.flush();
+    }
+  }
+
+  // Writes offsets, targets and (optionally) weights of one direction
+  static void writeCSR(Writer w, NeighborCursor c, int V, boolean weighted)
+    throws IOException
+  {
+    long offset = 0;
+    w.putLong(offset);
+    for (int v = 0; v < V; v++)
+    {
+      c.reset(v);
+      while (c.next())
+        offset++;
+      w.putLong(offset);
+    }
+
+    for (int v = 0; v < V; v++)
+    {
+      c.reset(v);
+      while (c.next())
+        w.putInt(c.target());
+    }
+    w.align();
+
+    if (!weighted)
+      return;
+    for (int v = 0; v < V; v++)
+    {
+      c.reset(v);
+      while (c.next())
+        w.putInt(c.weight());
+    }
+    w.align();
+  }
+
+  // Maps a file written by write(). Only the header is read.
+  public static MappedGraph open(String file) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel ch = raf.getChannel())
+    {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining())
+      {
+        if (ch.read(header, header.position()) < 0)
+          throw new IOException(file + ": truncated header");
+      }
+      header.flip();
+      if (header.getInt() != MAGIC)
+        throw new IOException(file + ": not a graph file");
+      int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException(file + ": unsupported version " + version);
+      int flags = header.getInt();
+      int V = header.getInt();
+      long edges = header.getLong();
+      long entries = header.getLong();
+      boolean directed = (flags & DIRECTED) != 0;
+      boolean weighted = (flags & WEIGHTED) != 0;
+
+      long expected = HEADER_SIZE + sectionsSize(V, entries, weighted)
+                      * (directed ? 2 : 1);
+      if (ch.size() < expected)
+        throw new IOException(file + ": truncated, expected " + expected
+                              + " bytes but found " + ch.size());
+
+      // The mappings stay valid once the channel is closed
+      long pos = HEADER_SIZE;
+      IntChunks[] fwd = mapCSR(ch, pos, V, entries, weighted);
+      IntChunks[] rev = fwd;
+      if (directed)
+        rev = mapCSR(ch, pos + sectionsSize(V, entries, weighted), V,
+                     entries, weighted);
+      return new MappedGraph(V, edges, directed, weighted,
+                             fwd[0], fwd[1], fwd[2], rev[0], rev[1], rev[2]);
+    }
+  }
+
+  // Bytes taken by offsets, targets and weights of one direction
+  static long sectionsSize(int V, long entries, boolean weighted)
+  {
+    long ints = align(entries * 4);
+    return 8L * (V + 1) + ints + (weighted ? ints : 0);
+  }
+
+  static long align(long bytes)
+  {
+    return (bytes + 7) & ~7L;
+  }
+
+  // Returns {offsets, targets, weights} mapped from position pos
+  static IntChunks[] mapCSR(FileChannel ch, long pos, int V, long entries,
+                            boolean weighted) throws IOException
+  {
+    IntChunks offsets = map(ch, pos, V + 1L, 8);
+    pos += 8L * (V + 1);
+    IntChunks targets = map(ch, pos, entries, 4);
+    pos += align(entries * 4);
+    IntChunks weights = weighted ? map(ch, pos, entries, 4) : null;
+    return new IntChunks[] {offsets, targets, weights};
+  }
+
+  // Maps n elements of the given size starting at pos, one mapping per chunk
+  static IntChunks map(FileChannel ch, long pos, long n, int size)
+    throws IOException
+  {
+    return map(ch, pos, n, size, FileChannel.MapMode.READ_ONLY);
+  }
+
+  static IntChunks map(FileChannel ch, long pos, long n, int size,
+                       FileChannel.MapMode mode) throws IOException
+  {
+    ByteBuffer[] buffers = new ByteBuffer[IntChunks.chunks(n)];
+    for (int c = 0; c < buffers.length; c++)
+    {
+      long start = pos + ((long) c << IntChunks.CHUNK_SHIFT) * size;
+      long len = (long) IntChunks.chunkLength(n, c) * size;
+      buffers[c] = ch.map(mode, start, len);
+    }
+    return new IntChunks(buffers, n, size == 8);
+  }
+
+  // Sequential little endian writer over a channel, with a 1 MB buffer
+  static class Writer
+  {
+    final FileChannel ch;
+    final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+    long written;
+
+    Writer(FileChannel c)
+    {
+      ch = c;
+    }
+
+    void putInt(int x) throws IOException
+    {
+      if (buf.remaining() < 4)
+        flush();
+      buf.putInt(x);
+      written += 4;
+    }
+
+    void putLong(long x) throws IOException
+    {
+      if (buf.remaining() < 8)
+        flush();
+      buf.putLong(x);
+      written += 8;
+    }
+
+    // Zero fills up to the given file position
+    void pad(long pos) throws IOException
+    {
+      while (written < pos)
+      {
+        if (!buf.hasRemaining())
+          flush();
+        buf.put((byte) 0);
+        written++;
+      }
+    }
+
+    // Zero fills up to the next multiple of 8 bytes
+    void align() throws IOException
+    {
+      pad(GraphFile.align(written));
+    }
+
+    void flush() throws IOException
+    {
+      buf.flip();
+      while (buf.hasRemaining())
+        ch.write(buf);
+      buf.clear();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package pkg.graphs;
+
+// Read access to the adjascency of a graph, independent of how it is stored.
+// Traversals written against GraphView run unchanged over a mutable Graph and
+// over its compact representations (e.g. CSRGraph).
+
+public interface GraphView
+{
+  int getVertices();
+
+  // Number of edges, as a long for graphs with more than 2^31 edges
+  long getEdgeCount();
+
+  boolean getIsDirected();
+
+  boolean getIsWeighted();
+
+  // Cursor over the out edges (u, v) of a vertex u
+  NeighborCursor outCursor();
+
+  // Cursor over the in edges (u, v) of a vertex v, yielding the sources u.
+  // For an undirected graph this is the same as outCursor().
+  NeighborCursor inCursor();
+}
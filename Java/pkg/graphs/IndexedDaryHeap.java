@@ -0,0 +1,175 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Min heap of the vertices 0 .. capacity-1 keyed by int priorities, with
+// decrease-key.
+//
+// Every vertex is in the heap at most once and pos[] remembers where, so a
+// shorter distance found for a queued vertex moves it up in place instead of
+// queueing a duplicate (the lazy deletion of PriorityQueue). The heap holds
+// at most V entries, keys are primitive ints and nothing is allocated after
+// construction.
+//
+// Every node has d children: a wider heap is shallower, so decreaseKey (the
+// most frequent operation in Dijkstra) moves fewer levels, at the price of
+// comparing d children per level in poll. d = 4 is a good default, and 4
+// children of an int array share a cache line.
+
+public class IndexedDaryHeap implements IndexedMinQueue
+{
+  final int d;
+  // Vertices in heap order, and their keys in the same order
+  final int[] heap, keys;
+  // Index of every vertex in heap, -1 if it isn't queued
+  final int[] pos;
+  int size;
+
+  public IndexedDaryHeap(int capacity)
+  {
+    this(capacity, 4);
+  }
+
+  public IndexedDaryHeap(int capacity, int d)
+  {
+    if (d < 2)
+      throw new IllegalArgumentException("A heap needs at least 2 children per node, got " + d);
+    this.d = d;
+    heap = new int[capacity];
+    keys = new int[capacity];
+    pos = new int[capacity];
+    Arrays.fill(pos, -1);
+  }
+
+  public int capacity()
+  {
+    return pos.length;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public boolean contains(int v)
+  {
+    return pos[v] >= 0;
+  }
+
+  // Key of a queued vertex
+  public int key(int v)
+  {
+    return keys[pos[v]];
+  }
+
+  public void insert(int v, int key)
+  {
+    if (pos[v] >= 0)
+      throw new IllegalStateException("Vertex " + v + " is already queued");
+    siftUp(size++, v, key);
+  }
+
+  public void decreaseKey(int v, int key)
+  {
+    int i = pos[v];
+    if (i < 0)
+      throw new IllegalStateException("Vertex " + v + " isn't queued");
+    if (key > keys[i])
+      throw new IllegalArgumentException("Key of " + v + " can't increase from "
+                                         + keys[i] + " to " + key);
+    siftUp(i, v, key);
+  }
+
+  // Queues v with the given key, or lowers its key if it is queued with a
+  // larger one. Returns false if v is queued with a key that isn't larger.
+  public boolean insertOrDecrease(int v, int key)
+  {
+    int i = pos[v];
+    if (i < 0)
+      i = size++;
+    else if (key >= keys[i])
+      return false;
+    siftUp(i, v, key);
+    return true;
+  }
+
+  // Vertex with the smallest key, without removing it
+  public int peek()
+  {
+    return heap[0];
+  }
+
+  public int peekKey()
+  {
+    return keys[0];
+  }
+
+  // Removes and returns the vertex with the smallest key
+  public int poll()
+  {
+    int top = heap[0];
+    pos[top] = -1;
+    size--;
+    if (size > 0)
+      siftDown(0, heap[size], keys[size]);
+    return top;
+  }
+
+  // Empties the heap in O(size), so that it can be reused for another search
+  public void clear()
+  {
+    for (int i = 0; i < size; i++)
+      pos[heap[i]] = -1;
+    size = 0;
+  }
+
+  // Moves the hole at i up to where (v, key) belongs and puts it there
+  void siftUp(int i, int v, int key)
+  {
+    while (i > 0)
+    {
+      int parent = (i - 1) / d;
+      if (keys[parent] <= key)
+        break;
+      heap[i] = heap[parent];
+      keys[i] = keys[parent];
+      pos[heap[i]] = i;
+      i = parent;
+    }
+    heap[i] = v;
+    keys[i] = key;
+    pos[v] = i;
+  }
+
+  // Moves the hole at i down to where (v, key) belongs and puts it there
+  void siftDown(int i, int v, int key)
+  {
+    while (true)
+    {
+      int first = i * d + 1;
+      if (first >= size)
+        break;
+      int last = Math.min(first + d, size);
+      int min = first;
+      for (int c = first + 1; c < last; c++)
+      {
+        if (keys[c] < keys[min])
+          min = c;
+      }
+      if (keys[min] >= key)
+        break;
+      heap[i] = heap[min];
+      keys[i] = keys[min];
+      pos[heap[i]] = i;
+      i = min;
+    }
+    heap[i] = v;
+    keys[i] = key;
+    pos[v] = i;
+  }
+}
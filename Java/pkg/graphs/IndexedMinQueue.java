@@ -0,0 +1,68 @@
+package pkg.graphs;
+
+// Min priority queue of the vertices 0 .. capacity-1 keyed by int distances,
+// with decrease-key, as used by Dijkstra's algorithm.
+//
+// Implementations:
+//   IndexedDaryHeap  any keys, O(log V) per operation
+//   BucketQueue      Dial's buckets, for small non-negative edge weights
+//   RadixHeap        monotone, for non-negative int keys
+// The bucket based queues are monotone: a key must not be smaller than the
+// last key polled, which holds in Dijkstra's algorithm as long as no edge
+// weight is negative.
+
+public interface IndexedMinQueue
+{
+  // Edge weights up to which forGraph() picks Dial's buckets
+  int DIAL_MAX_WEIGHT = 256;
+
+  int capacity();
+
+  int size();
+
+  boolean isEmpty();
+
+  boolean contains(int v);
+
+  // Queues v with the given key, or lowers its key if it is queued with a
+  // larger one. Returns false if v is queued with a key that isn't larger.
+  boolean insertOrDecrease(int v, int key);
+
+  // Removes and returns the vertex with the smallest key
+  int poll();
+
+  // Empties the queue so that it can be reused for another search
+  void clear();
+
+  // Picks the queue suited to the edge weights of g: Dial's buckets for
+  // weights up to DIAL_MAX_WEIGHT, a radix heap for larger non-negative
+  // weights and a d-ary heap if any weight is negative.
+  static IndexedMinQueue forGraph(GraphView g)
+  {
+    int V = g.getVertices();
+    int max = maxWeight(g);
+    if (max < 0)
+      return new IndexedDaryHeap(V);
+    if (max <= DIAL_MAX_WEIGHT)
+      return new BucketQueue(V, max);
+    return new RadixHeap(V);
+  }
+
+  // Largest edge weight of g, or -1 if any weight is negative
+  static int maxWeight(GraphView g)
+  {
+    NeighborCursor c = g.outCursor();
+    int max = 0;
+    for (int v = 0; v < g.getVertices(); v++)
+    {
+      c.reset(v);
+      while (c.next())
+      {
+        if (c.weight() < 0)
+          return -1;
+        max = Math.max(max, c.weight());
+      }
+    }
+    return max;
+  }
+}
@@ -0,0 +1,149 @@
+package pkg.graphs;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+// An int (or long) array with long indices, stored in a sequence of NIO
+// buffers, for data that doesn't fit in one Java array or one mapping.
+// Every chunk holds 2^CHUNK_SHIFT elements, so element i lives in chunk
+// i >>> CHUNK_SHIFT at position i & CHUNK_MASK.
+
+class IntChunks
+{
+  // 2^27 elements per chunk (512 MB of ints, 1 GB of longs), below the 2 GB
+  // limit of a ByteBuffer
+  static final int CHUNK_SHIFT = 27;
+  static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+  static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  final ByteBuffer[] buffers;
+  final IntBuffer[] ints;
+  final LongBuffer[] longs;
+  final long length;
+
+  // Slices the byte buffers into int views (longs = false) or long views
+  // (longs = true). Every buffer but the last must hold exactly CHUNK_SIZE
+  // elements.
+  IntChunks(ByteBuffer[] bufs, long n, boolean asLongs)
+  {
+    buffers = bufs;
+    length = n;
+    if (asLongs)
+    {
+      ints = null;
+      longs = new LongBuffer[buffers.length];
+      for (int c = 0; c < buffers.length; c++)
+        longs[c] = buffers[c].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+    else
+    {
+      longs = null;
+      ints = new IntBuffer[buffers.length];
+      for (int c = 0; c < buffers.length; c++)
+        ints[c] = buffers[c].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+  }
+
+  // Allocates n zeroed elements outside of the Java heap
+  static IntChunks allocateDirect(long n, boolean asLongs)
+  {
+    int size = asLongs ? 8 : 4;
+    ByteBuffer[] bufs = new ByteBuffer[chunks(n)];
+    for (int c = 0; c < bufs.length; c++)
+      bufs[c] = ByteBuffer.allocateDirect(chunkLength(n, c) * size);
+    return new IntChunks(bufs, n, asLongs);
+  }
+
+  // Returns the memory of direct buffers right away instead of when the
+  // buffers are garbage collected. The chunks must not be used afterwards.
+  // There is no public API for this before the Foreign Memory API, so the
+  // buffers' cleaners are invoked reflectively; if that isn't possible the
+  // memory is still returned by the garbage collector.
+  void free()
+  {
+    for (ByteBuffer b : buffers)
+    {
+      if (b == null || !b.isDirect())
+        continue;
+      try
+      {
+        // Java 9+
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field f = unsafeClass.getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        unsafeClass.getMethod("invokeCleaner", ByteBuffer.class)
+                   .invoke(f.get(null), b);
+      }
+      catch (ReflectiveOperationException | RuntimeException e)
+      {
+        try
+        {
+          // Java 8
+          Method cleaner = b.getClass().getMethod("cleaner");
+          cleaner.setAccessible(true);
+          Object c = cleaner.invoke(b);
+          if (c != null)
+            c.getClass().getMethod("clean").invoke(c);
+        }
+        catch (ReflectiveOperationException | RuntimeException ignored)
+        {
+          // Left to the garbage collector
+        }
+      }
+    }
+  }
+
+  // Number of chunks needed for n elements
+  static int chunks(long n)
+  {
+    return (int) ((n + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+  }
+
+  // Number of elements in chunk c of an array of n elements
+  static int chunkLength(long n, int c)
+  {
+    return (int) Math.min(CHUNK_SIZE, n - ((long) c << CHUNK_SHIFT));
+  }
+
+  int get(long i)
+  {
+    return ints[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+  }
+
+  void set(long i, int x)
+  {
+    ints[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), x);
+  }
+
+  // Copies len ints from element i on into dst[off..]. The range must not
+  // cross a chunk boundary.
+  void get(long i, int[] dst, int off, int len)
+  {
+    // A duplicate has its own position, so threads can copy concurrently
+    IntBuffer b = ints[(int) (i >>> CHUNK_SHIFT)].duplicate();
+    b.position((int) (i & CHUNK_MASK));
+    b.get(dst, off, len);
+  }
+
+  // Copies src[off..off+len-1] to the elements from i on, within one chunk
+  void put(long i, int[] src, int off, int len)
+  {
+    IntBuffer b = ints[(int) (i >>> CHUNK_SHIFT)].duplicate();
+    b.position((int) (i & CHUNK_MASK));
+    b.put(src, off, len);
+  }
+
+  long getLong(long i)
+  {
+    return longs[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+  }
+
+  void setLong(long i, long x)
+  {
+    longs[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), x);
+  }
+}
@@ -0,0 +1,10 @@
+package pkg.graphs;
+
+// Receives one edge (src, dest, wt) at a time, see Graph.forEachEdge().
+// The primitive counterpart of java.util.function.Consumer<Edge>.
+
+@FunctionalInterface
+public interface IntTriConsumer
+{
+  void accept(int src, int dest, int wt);
+}
@@ -0,0 +1,188 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+// Preprocessing of ALT (A*, Landmarks, Triangle inequality) goal directed
+// search.
+//
+// A few landmark vertices are picked and the shortest distances from every
+// landmark L to every vertex, and from every vertex to L, are stored. By the
+// triangle inequality, for any vertices v and t
+//   d(v, t) >= d(L, t) - d(L, v)   and   d(v, t) >= d(v, L) - d(t, L)
+// so the largest of these over all landmarks is a lower bound on d(v, t).
+// The bound is a consistent A* heuristic, and with landmarks spread around
+// the edge of the graph it is tight enough that A* settles a small fraction
+// of the vertices plain Dijkstra settles.
+//
+// Landmarks are picked by farthest selection: each one is the vertex with
+// the most hops to the landmarks picked before it. The Dijkstra searches of
+// the landmarks are independent and run in parallel. Distances are stored
+// vertex by vertex, so the bound of a vertex reads one contiguous run of
+// 2k ints.
+//
+// Edge weights must be non negative.
+
+public class Landmarks
+{
+  static final int INF = Integer.MAX_VALUE;
+
+  final int vertices, k;
+  final int[] landmarks;
+  // from[v*k + i] = d(landmark i, v), to[v*k + i] = d(v, landmark i), INF if
+  // there is no path. The same array for undirected graphs.
+  final int[] from, to;
+
+  public Landmarks(GraphView g, int k)
+  {
+    vertices = g.getVertices();
+    this.k = Math.min(k, vertices);
+    // Every table holds k distances per vertex in one array
+    long entries = (long) vertices * this.k;
+    if (entries > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException(this.k + " landmarks for " + vertices
+                                         + " vertices need " + entries
+                                         + " distances per table, too many for an array");
+    landmarks = pick(g, this.k);
+    from = new int[(int) entries];
+    to = g.getIsDirected() ? new int[(int) entries] : from;
+
+    IntStream.range(0, this.k).parallel().forEach(i ->
+    {
+      IndexedDaryHeap heap = new IndexedDaryHeap(vertices);
+      int[] dist = new int[vertices];
+      dijkstras(g.outCursor(), landmarks[i], heap, dist);
+      for (int v = 0; v < vertices; v++)
+        from[v * this.k + i] = dist[v];
+      if (to != from)
+      {
+        // Distances to the landmark are distances from it along in edges
+        dijkstras(g.inCursor(), landmarks[i], heap, dist);
+        for (int v = 0; v < vertices; v++)
+          to[v * this.k + i] = dist[v];
+      }
+    });
+  }
+
+  // Farthest selection by hops: the first landmark is the vertex farthest
+  // from vertex 0, every next one the vertex farthest from all landmarks so
+  // far. A vertex not reached at all is the farthest, so every part of a
+  // disconnected graph gets a landmark while there are landmarks left.
+  static int[] pick(GraphView g, int k)
+  {
+    int V = g.getVertices();
+    int[] res = new int[k];
+    int[] hops = new int[V];
+    int[] queue = new int[V];
+    NeighborCursor c = g.outCursor();
+
+    for (int i = 0; i < k; i++)
+    {
+      // Multi source BFS from all landmarks so far, from vertex 0 at first
+      Arrays.fill(hops, -1);
+      int head = 0, tail = 0;
+      if (i == 0)
+      {
+        hops[0] = 0;
+        queue[tail++] = 0;
+      }
+      for (int j = 0; j < i; j++)
+      {
+        hops[res[j]] = 0;
+        queue[tail++] = res[j];
+      }
+      while (head < tail)
+      {
+        int v = queue[head++];
+        c.reset(v);
+        while (c.next())
+        {
+          if (hops[c.target()] < 0)
+          {
+            hops[c.target()] = hops[v] + 1;
+            queue[tail++] = c.target();
+          }
+        }
+      }
+
+      int farthest = 0;
+      for (int v = 0; v < V; v++)
+      {
+        if (hops[v] < 0)
+        {
+          farthest = v;
+          break;
+        }
+        if (hops[v] > hops[farthest])
+          farthest = v;
+      }
+      res[i] = farthest;
+    }
+    return res;
+  }
+
+  static void dijkstras(NeighborCursor c, int src, IndexedDaryHeap heap,
+                        int[] dist)
+  {
+    Arrays.fill(dist, INF);
+    dist[src] = 0;
+    heap.insert(src, 0);
+    while (!heap.isEmpty())
+    {
+      int u = heap.poll();
+      c.reset(u);
+      while (c.next())
+      {
+        int nDist = dist[u] + c.weight();
+        if (nDist < dist[c.target()])
+        {
+          dist[c.target()] = nDist;
+          heap.insertOrDecrease(c.target(), nDist);
+        }
+      }
+    }
+  }
+
+  public int[] getLandmarks()
+  {
+    return landmarks;
+  }
+
+  // Lower bound on the distance from v to t
+  public int lowerBound(int v, int t)
+  {
+    int bound = 0;
+    int vi = v * k, ti = t * k;
+    for (int i = 0; i < k; i++)
+    {
+      bound = Math.max(bound, difference(from[ti + i], from[vi + i]));
+      bound = Math.max(bound, difference(to[vi + i], to[ti + i]));
+    }
+    return bound;
+  }
+
+  // a - b, or 0 if either distance is unknown
+  static int difference(int a, int b)
+  {
+    return a == INF || b == INF ? 0 : a - b;
+  }
+
+  // Heuristic for A* searches towards t, with t's distances copied out once
+  public IntUnaryOperator heuristic(int t)
+  {
+    int[] fromT = Arrays.copyOfRange(from, t * k, t * k + k);
+    int[] toT = Arrays.copyOfRange(to, t * k, t * k + k);
+    return v ->
+    {
+      int bound = 0;
+      int vi = v * k;
+      for (int i = 0; i < k; i++)
+      {
+        bound = Math.max(bound, difference(fromT[i], from[vi + i]));
+        bound = Math.max(bound, difference(to[vi + i], toT[i]));
+      }
+      return bound;
+    };
+  }
+}
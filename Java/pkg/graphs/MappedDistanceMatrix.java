@@ -0,0 +1,392 @@
+package pkg.graphs;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// All pairs distance matrix (and optionally predecessor matrix) kept in a
+// memory mapped file instead of on the Java heap, for graphs whose V*V
+// matrix doesn't fit in memory: 100k vertices take 40 GB of distances.
+//
+// The matrix is stored tile by tile: tile (ib, jb) holds rows ib*tile ..
+// ib*tile + tile-1 and the same range of columns, as one contiguous
+// row major block of tile*tile ints. A tile is read or written with one
+// bulk copy, which is what blocked Floyd-Warshall works on, and the OS only
+// needs to keep the tiles of the current round in the page cache.
+//
+// floydWarshall() runs the three phases of BlockedFloydWarshall round by
+// round, with the row and column of tiles of the round kept in memory, so
+// the heap holds O(V * tile) ints at any time. Johnson's algorithm can fill
+// the matrix row by row instead, with setRow(). get() reads any single
+// distance back without loading the rest of the matrix.
+//
+// Layout (little endian):
+//   Header, HEADER_SIZE bytes
+//     int  MAGIC
+//     int  VERSION
+//     int  flags (PRED)
+//     int  vertices (n)
+//     int  tile
+//   int[tiles*tiles*tile*tile]  distances, tile by tile, INF past row or
+//                               column n-1
+//   int[tiles*tiles*tile*tile]  predecessors, -1 where there is none, only
+//                               if PRED
+
+public class MappedDistanceMatrix implements AutoCloseable
+{
+  static final int MAGIC = 0x444d5831; // "DMX1"
+  static final int VERSION = 1;
+  static final int PRED = 1;
+  static final int HEADER_SIZE = 64;
+  public static final int INF = BlockedFloydWarshall.INF;
+  // 256 x 256 ints are 256 KB per tile
+  public static final int TILE = 256;
+
+  final int n, tile, tiles, shift;
+  final long tileSize;
+  final IntChunks dist, pred;
+  // Set by close() before the mapping is freed, checked before every access
+  volatile boolean closed;
+
+  MappedDistanceMatrix(int n, int tile, IntChunks d, IntChunks p)
+  {
+    this.n = n;
+    this.tile = tile;
+    tiles = (n + tile - 1) / tile;
+    shift = Integer.numberOfTrailingZeros(tile);
+    tileSize = (long) tile * tile;
+    dist = d;
+    pred = p;
+  }
+
+  // Creates the file for n vertices with no edges: 0 from every vertex to
+  // itself, INF everywhere else
+  public static MappedDistanceMatrix create(String file, int n,
+                                            boolean withPred) throws IOException
+  {
+    return create(file, n, TILE, withPred);
+  }
+
+  // The tile width must be a power of 2 up to 8192, so that a tile never
+  // crosses the boundary of a mapping
+  public static MappedDistanceMatrix create(String file, int n, int tile,
+                                            boolean withPred) throws IOException
+  {
+    if (n < 0)
+      throw new IllegalArgumentException("Negative number of vertices " + n);
+    if (tile < 1 || tile > 8192 || Integer.bitCount(tile) != 1)
+      throw new IllegalArgumentException("Tile width must be a power of 2 up to 8192, got " + tile);
+    int tiles = (n + tile - 1) / tile;
+    long entries = (long) tiles * tiles * tile * tile;
+
+    MappedDistanceMatrix m;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+         FileChannel ch = raf.getChannel())
+    {
+      ch.truncate(0);
+      raf.setLength(HEADER_SIZE + 4 * entries * (withPred ? 2 : 1));
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(withPred ? PRED : 0)
+            .putInt(n).putInt(tile);
+      header.rewind();
+      while (header.hasRemaining())
+        ch.write(header, header.position());
+      m = map(ch, n, tile, withPred);
+    }
+
+    int[] d = new int[tile * tile], p = new int[tile * tile];
+    Arrays.fill(p, -1);
+    for (int ib = 0; ib < tiles; ib++)
+    {
+      for (int jb = 0; jb < tiles; jb++)
+      {
+        Arrays.fill(d, INF);
+        if (ib == jb)
+        {
+          for (int i = 0; i < tile && ib * tile + i < n; i++)
+            d[i * tile + i] = 0;
+        }
+        m.writeTile(ib, jb, d, withPred ? p : null);
+      }
+    }
+    return m;
+  }
+
+  // Maps a file written by create()
+  public static MappedDistanceMatrix open(String file) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+         FileChannel ch = raf.getChannel())
+    {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                    .order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining())
+      {
+        if (ch.read(header, header.position()) < 0)
+          throw new IOException(file + ": truncated header");
+      }
+      header.flip();
+      if (header.getInt() != MAGIC)
+        throw new IOException(file + ": not a distance matrix file");
+      int version = header.getInt();
+      if (version != VERSION)
+        throw new IOException(file + ": unsupported version " + version);
+      boolean withPred = (header.getInt() & PRED) != 0;
+      int n = header.getInt();
+      int tile = header.getInt();
+      if (n < 0 || tile < 1 || tile > 8192 || Integer.bitCount(tile) != 1)
+        throw new IOException(file + ": corrupt header");
+
+      int tiles = (n + tile - 1) / tile;
+      long expected = HEADER_SIZE + 4L * tiles * tiles * tile * tile
+                                    * (withPred ? 2 : 1);
+      if (ch.size() < expected)
+        throw new IOException(file + ": truncated, expected " + expected
+                              + " bytes but found " + ch.size());
+      return map(ch, n, tile, withPred);
+    }
+  }
+
+  // The mappings stay valid once the channel is closed
+  static MappedDistanceMatrix map(FileChannel ch, int n, int tile,
+                                  boolean withPred) throws IOException
+  {
+    int tiles = (n + tile - 1) / tile;
+    long entries = (long) tiles * tiles * tile * tile;
+    IntChunks d = GraphFile.map(ch, HEADER_SIZE, entries, 4,
+                                FileChannel.MapMode.READ_WRITE);
+    IntChunks p = withPred ? GraphFile.map(ch, HEADER_SIZE + 4 * entries,
+                                           entries, 4,
+                                           FileChannel.MapMode.READ_WRITE)
+                           : null;
+    return new MappedDistanceMatrix(n, tile, d, p);
+  }
+
+  public int getVertices()
+  {
+    return n;
+  }
+
+  public int getTile()
+  {
+    return tile;
+  }
+
+  public boolean hasPred()
+  {
+    return pred != null;
+  }
+
+  // Position of entry (i, j) in the tile by tile layout
+  long index(int i, int j)
+  {
+    long t = (long) (i >> shift) * tiles + (j >> shift);
+    return t * tileSize + ((long) (i & (tile - 1)) << shift) + (j & (tile - 1));
+  }
+
+  void check(int i, int j)
+  {
+    if (closed)
+      throw new IllegalStateException("MappedDistanceMatrix has been closed");
+    if (i < 0 || i >= n || j < 0 || j >= n)
+      throw new IndexOutOfBoundsException("Entry (" + i + ", " + j + ") of a "
+                                          + n + " x " + n + " matrix");
+  }
+
+  // Distance from i to j, INF if there is no path
+  public int get(int i, int j)
+  {
+    check(i, j);
+    return dist.get(index(i, j));
+  }
+
+  // Vertex before j on the path from i, -1 if there is none or no
+  // predecessors are kept
+  public int getPred(int i, int j)
+  {
+    check(i, j);
+    return pred == null ? -1 : pred.get(index(i, j));
+  }
+
+  public void set(int i, int j, int d)
+  {
+    check(i, j);
+    dist.set(index(i, j), d);
+  }
+
+  // Adds the edge u -> v, keeping the lighter of parallel edges
+  public void setEdge(int u, int v, int w)
+  {
+    check(u, v);
+    long x = index(u, v);
+    if (u == v || w >= dist.get(x))
+      return;
+    dist.set(x, w);
+    if (pred != null)
+      pred.set(x, u);
+  }
+
+  // Writes row i (and its predecessors, unless p or the file has none) from
+  // arrays of n entries. Rows are disjoint, so threads may write different
+  // rows at the same time.
+  public void setRow(int i, int[] d, int[] p)
+  {
+    check(i, 0);
+    for (int jb = 0; jb < tiles; jb++)
+    {
+      int cols = extent(jb);
+      dist.put(index(i, jb * tile), d, jb * tile, cols);
+      if (pred != null && p != null)
+        pred.put(index(i, jb * tile), p, jb * tile, cols);
+    }
+  }
+
+  // Reads row i into d (and p, unless it or the file's predecessors are
+  // missing)
+  public void getRow(int i, int[] d, int[] p)
+  {
+    check(i, 0);
+    for (int jb = 0; jb < tiles; jb++)
+    {
+      int cols = extent(jb);
+      dist.get(index(i, jb * tile), d, jb * tile, cols);
+      if (pred != null && p != null)
+        pred.get(index(i, jb * tile), p, jb * tile, cols);
+    }
+  }
+
+  // Rows or columns of tile b that are inside the matrix
+  int extent(int b)
+  {
+    return Math.min(tile, n - b * tile);
+  }
+
+  void readTile(int ib, int jb, int[] d, int[] p)
+  {
+    long at = ((long) ib * tiles + jb) * tileSize;
+    dist.get(at, d, 0, (int) tileSize);
+    if (p != null)
+      pred.get(at, p, 0, (int) tileSize);
+  }
+
+  void writeTile(int ib, int jb, int[] d, int[] p)
+  {
+    long at = ((long) ib * tiles + jb) * tileSize;
+    dist.put(at, d, 0, (int) tileSize);
+    if (p != null)
+      pred.put(at, p, 0, (int) tileSize);
+  }
+
+  // Blocked Floyd-Warshall over the file, in place. Every round reads the
+  // diagonal tile, then the row and column of tiles through it (phase 2),
+  // which are kept in memory while every other tile is read, relaxed
+  // through them and written back (phase 3). Tiles within a phase are
+  // relaxed in parallel.
+  public void floydWarshall()
+  {
+    if (closed)
+      throw new IllegalStateException("MappedDistanceMatrix has been closed");
+    int area = (int) tileSize;
+    boolean withPred = pred != null;
+    // Diagonal tile, and row and column kb of the current round with the
+    // predecessors of the row, which phase 3 takes predecessors from
+    int[] diag = new int[area], diagPred = withPred ? new int[area] : null;
+    int[][] row = new int[tiles][area], col = new int[tiles][area];
+    int[][] rowPred = withPred ? new int[tiles][area] : new int[tiles][];
+
+    for (int kb = 0; kb < tiles; kb++)
+    {
+      final int k = kb;
+      int depth = extent(kb);
+
+      // Phase 1
+      readTile(kb, kb, diag, diagPred);
+      BlockedFloydWarshall.relaxTile(diag, diagPred, 0, diag, 0, diag, diagPred,
+                                     0, tile, depth, depth, depth);
+      writeTile(kb, kb, diag, diagPred);
+
+      // Phase 2
+      IntStream.range(0, tiles).parallel().forEach(b ->
+      {
+        if (b == k)
+          return;
+        int[] p = withPred ? rowPred[b] : null;
+        readTile(k, b, row[b], p);
+        BlockedFloydWarshall.relaxTile(row[b], p, 0, diag, 0, row[b], p, 0,
+                                       tile, depth, extent(b), depth);
+        writeTile(k, b, row[b], p);
+
+        int[] cp = withPred ? new int[area] : null;
+        readTile(b, k, col[b], cp);
+        BlockedFloydWarshall.relaxTile(col[b], cp, 0, col[b], 0, diag,
+                                       diagPred, 0, tile, extent(b), depth,
+                                       depth);
+        writeTile(b, k, col[b], cp);
+      });
+
+      // Phase 3, one row of tiles per task
+      IntStream.range(0, tiles).parallel().forEach(ib ->
+      {
+        if (ib == k)
+          return;
+        int[] c = new int[area], cp = withPred ? new int[area] : null;
+        for (int jb = 0; jb < tiles; jb++)
+        {
+          if (jb == k)
+            continue;
+          readTile(ib, jb, c, cp);
+          BlockedFloydWarshall.relaxDisjointTile(c, cp, 0, col[ib], 0, row[jb],
+                                                 rowPred[jb], 0, tile,
+                                                 extent(ib), extent(jb), depth);
+          writeTile(ib, jb, c, cp);
+        }
+      });
+    }
+  }
+
+  // Whether the matrix, once complete, has a negative cycle: some vertex
+  // then has a negative distance to itself
+  public boolean hasNegativeCycle()
+  {
+    for (int i = 0; i < n; i++)
+    {
+      if (get(i, i) < 0)
+        return true;
+    }
+    return false;
+  }
+
+  // Writes changes still in memory to the file
+  public void flush()
+  {
+    if (closed)
+      throw new IllegalStateException("MappedDistanceMatrix has been closed");
+    force(dist);
+    if (pred != null)
+      force(pred);
+  }
+
+  static void force(IntChunks c)
+  {
+    for (ByteBuffer b : c.buffers)
+      ((MappedByteBuffer) b).force();
+  }
+
+  // Flushes the file and unmaps it. The matrix must not be used afterwards.
+  public synchronized void close()
+  {
+    if (closed)
+      return;
+    flush();
+    closed = true;
+    dist.free();
+    if (pred != null)
+      pred.free();
+  }
+}
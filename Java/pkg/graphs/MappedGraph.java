@@ -0,0 +1,119 @@
+package pkg.graphs;
+
+// Read-only graph backed by a memory mapped file, see GraphFile.
+//
+// The CSR arrays are read straight from the mapped buffers, so algorithms
+// written against GraphView run over the file without loading it. Opening is
+// O(1); pages of the file are read by the OS when a traversal first touches
+// them.
+
+public class MappedGraph implements GraphView
+{
+  final int vertices;
+  final long edges;
+  final boolean isDirected, isWeighted;
+  // Forward CSR (out edges), weights is null for unweighted graphs
+  final IntChunks offsets, targets, weights;
+  // Reverse CSR (in edges), the forward CSR for undirected graphs
+  final IntChunks inOffsets, inSources, inWeights;
+
+  MappedGraph(int n, long e, boolean dir, boolean wt,
+              IntChunks off, IntChunks tgt, IntChunks wts,
+              IntChunks inOff, IntChunks inSrc, IntChunks inWts)
+  {
+    vertices = n;
+    edges = e;
+    isDirected = dir;
+    isWeighted = wt;
+    offsets = off;
+    targets = tgt;
+    weights = wts;
+    inOffsets = inOff;
+    inSources = inSrc;
+    inWeights = inWts;
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  public long getEdgeCount()
+  {
+    return edges;
+  }
+
+  public boolean getIsDirected()
+  {
+    return isDirected;
+  }
+
+  public boolean getIsWeighted()
+  {
+    return isWeighted;
+  }
+
+  public long outDegree(int v)
+  {
+    return offsets.getLong(v + 1) - offsets.getLong(v);
+  }
+
+  public long inDegree(int v)
+  {
+    return inOffsets.getLong(v + 1) - inOffsets.getLong(v);
+  }
+
+  public NeighborCursor outCursor()
+  {
+    return new Cursor(offsets, targets, weights);
+  }
+
+  public NeighborCursor inCursor()
+  {
+    return new Cursor(inOffsets, inSources, inWeights);
+  }
+
+  // Walks the entries offsets[v] .. offsets[v+1]-1 of the mapped sections
+  static class Cursor implements NeighborCursor
+  {
+    final IntChunks offsets, targets, weights;
+    long i, end;
+
+    Cursor(IntChunks off, IntChunks tgt, IntChunks wts)
+    {
+      offsets = off;
+      targets = tgt;
+      weights = wts;
+    }
+
+    public void reset(int v)
+    {
+      i = offsets.getLong(v) - 1;
+      end = offsets.getLong(v + 1);
+    }
+
+    public boolean next()
+    {
+      return ++i < end;
+    }
+
+    public int target()
+    {
+      return targets.get(i);
+    }
+
+    public int weight()
+    {
+      return weights == null ? 1 : weights.get(i);
+    }
+  }
+
+  public String toString()
+  {
+    StringBuilder res = new StringBuilder("Vertices: " + vertices);
+    res.append("\nisDirected: " + isDirected);
+    res.append("\nisWeigted: " + isWeighted);
+    res.append("\nEdges: " + edges + " (memory mapped)\n");
+    return res.toString();
+  }
+}
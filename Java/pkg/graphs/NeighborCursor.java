@@ -0,0 +1,27 @@
+package pkg.graphs;
+
+// Cursor over the neighbours of one vertex, yielding (target, weight) pairs
+// without boxing or weight lookups.
+//
+// A cursor is created once per traversal and re-positioned with reset(v), so
+// walking the neighbours of every vertex allocates nothing:
+//
+//   NeighborCursor c = g.outCursor();
+//   c.reset(u);
+//   while (c.next())
+//     relax(u, c.target(), c.weight());
+
+public interface NeighborCursor
+{
+  // Positions the cursor before the first neighbour of vertex v
+  void reset(int v);
+
+  // Moves to the next neighbour, returns false once all have been seen
+  boolean next();
+
+  // Neighbour at the current position
+  int target();
+
+  // Weight of the edge to the neighbour at the current position
+  int weight();
+}
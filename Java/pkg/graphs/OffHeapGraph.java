@@ -0,0 +1,204 @@
+package pkg.graphs;
+
+// Graph stored outside of the Java heap, for graphs with billions of edges.
+//
+// The adjascency is kept in CSR layout (as in CSRGraph) but in direct
+// buffers indexed by long, so the number of adjascency entries isn't limited
+// by the 2^31 elements of a Java array, and the garbage collector never has
+// to scan or copy the edges, no matter how large the graph is.
+//
+// The memory is released by close(). Any use of the graph afterwards, or of
+// cursors obtained from it, throws IllegalStateException instead of reading
+// freed memory.
+// Traversals written against GraphView (BFS, DFS, DijkstrasSSSP) run over an
+// OffHeapGraph unchanged.
+
+public class OffHeapGraph implements GraphView, AutoCloseable
+{
+  final int vertices;
+  final long edges;
+  final boolean isDirected, isWeighted;
+  // Forward CSR (out edges), weights is null for unweighted graphs
+  IntChunks offsets, targets, weights;
+  // Reverse CSR (in edges), the forward CSR for undirected graphs
+  IntChunks inOffsets, inSources, inWeights;
+  // Set by close() before the memory is freed, checked before every read
+  volatile boolean closed;
+
+  OffHeapGraph(int n, long e, boolean dir, boolean wt)
+  {
+    vertices = n;
+    edges = e;
+    isDirected = dir;
+    isWeighted = wt;
+  }
+
+  // Copies any graph (Graph, CSRGraph, MappedGraph, ...) off the heap
+  public static OffHeapGraph copyOf(GraphView g)
+  {
+    OffHeapGraph h = new OffHeapGraph(g.getVertices(), g.getEdgeCount(),
+                                      g.getIsDirected(), g.getIsWeighted());
+    IntChunks[] fwd = copyCSR(g.outCursor(), h.vertices, h.isWeighted);
+    h.offsets = fwd[0];
+    h.targets = fwd[1];
+    h.weights = fwd[2];
+    if (h.isDirected)
+    {
+      IntChunks[] rev = copyCSR(g.inCursor(), h.vertices, h.isWeighted);
+      h.inOffsets = rev[0];
+      h.inSources = rev[1];
+      h.inWeights = rev[2];
+    }
+    else
+    {
+      h.inOffsets = h.offsets;
+      h.inSources = h.targets;
+      h.inWeights = h.weights;
+    }
+    return h;
+  }
+
+  // Returns {offsets, targets, weights} of the edges walked by cursor c
+  static IntChunks[] copyCSR(NeighborCursor c, int V, boolean weighted)
+  {
+    // Pass 1: offsets
+    IntChunks offsets = IntChunks.allocateDirect(V + 1L, true);
+    long entries = 0;
+    for (int v = 0; v < V; v++)
+    {
+      c.reset(v);
+      while (c.next())
+        entries++;
+      offsets.setLong(v + 1, entries);
+    }
+
+    // Pass 2: targets and weights
+    IntChunks targets = IntChunks.allocateDirect(entries, false);
+    IntChunks weights = weighted ? IntChunks.allocateDirect(entries, false)
+                                 : null;
+    long i = 0;
+    for (int v = 0; v < V; v++)
+    {
+      c.reset(v);
+      while (c.next())
+      {
+        targets.set(i, c.target());
+        if (weighted)
+          weights.set(i, c.weight());
+        i++;
+      }
+    }
+    return new IntChunks[] {offsets, targets, weights};
+  }
+
+  public int getVertices()
+  {
+    return vertices;
+  }
+
+  public long getEdgeCount()
+  {
+    return edges;
+  }
+
+  public boolean getIsDirected()
+  {
+    return isDirected;
+  }
+
+  public boolean getIsWeighted()
+  {
+    return isWeighted;
+  }
+
+  public long outDegree(int v)
+  {
+    checkOpen();
+    return offsets.getLong(v + 1) - offsets.getLong(v);
+  }
+
+  public long inDegree(int v)
+  {
+    checkOpen();
+    return inOffsets.getLong(v + 1) - inOffsets.getLong(v);
+  }
+
+  public NeighborCursor outCursor()
+  {
+    checkOpen();
+    return new Cursor(this, offsets, targets, weights);
+  }
+
+  public NeighborCursor inCursor()
+  {
+    checkOpen();
+    return new Cursor(this, inOffsets, inSources, inWeights);
+  }
+
+  void checkOpen()
+  {
+    if (closed)
+      throw new IllegalStateException("OffHeapGraph has been closed");
+  }
+
+  // Cursor of MappedGraph that stops working once the graph is closed
+  static class Cursor extends MappedGraph.Cursor
+  {
+    final OffHeapGraph g;
+
+    Cursor(OffHeapGraph graph, IntChunks off, IntChunks tgt, IntChunks wts)
+    {
+      super(off, tgt, wts);
+      g = graph;
+    }
+
+    public void reset(int v)
+    {
+      g.checkOpen();
+      super.reset(v);
+    }
+
+    public int target()
+    {
+      g.checkOpen();
+      return super.target();
+    }
+
+    public int weight()
+    {
+      g.checkOpen();
+      return super.weight();
+    }
+  }
+
+  // Releases the off heap memory. A traversal running in another thread at
+  // the same time may still crash the JVM, so close only once they are done.
+  public synchronized void close()
+  {
+    if (closed)
+      return;
+    closed = true;
+    IntChunks[] all = {offsets, targets, weights};
+    for (IntChunks c : all)
+      if (c != null)
+        c.free();
+    if (isDirected)
+    {
+      IntChunks[] rev = {inOffsets, inSources, inWeights};
+      for (IntChunks c : rev)
+        if (c != null)
+          c.free();
+    }
+    offsets = targets = weights = null;
+    inOffsets = inSources = inWeights = null;
+  }
+
+  public String toString()
+  {
+    StringBuilder res = new StringBuilder("Vertices: " + vertices);
+    res.append("\nisDirected: " + isDirected);
+    res.append("\nisWeigted: " + isWeighted);
+    res.append("\nEdges: " + edges + " (off heap)\n");
+    return res.toString();
+  }
+}
@@ -0,0 +1,108 @@
+package pkg.graphs;
+
+// Radix heap: a monotone priority queue for non-negative int keys, for
+// Dijkstra's algorithm with edge weights too large for Dial's buckets.
+//
+// Keys are bucketed by the highest bit in which they differ from the last
+// key polled: bucket 0 holds keys equal to it, bucket i keys that differ in
+// bit i-1 and nothing above. When bucket 0 runs empty, the first non-empty
+// bucket is emptied into the lower ones around its smallest key. A vertex
+// can only move down, at most 32 times, so every operation is O(1)
+// amortised plus O(log C) per vertex for a largest edge weight C, with no
+// comparisons between keys beyond finding a bucket's minimum.
+
+public class RadixHeap implements IndexedMinQueue
+{
+  static final int BUCKETS = 33;
+
+  final BucketLists buckets;
+  final int[] keys;
+  int size;
+  // Last key polled, no queued key is smaller
+  int last;
+
+  public RadixHeap(int capacity)
+  {
+    buckets = new BucketLists(BUCKETS, capacity);
+    keys = new int[capacity];
+  }
+
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public boolean contains(int v)
+  {
+    return buckets.bucket[v] >= 0;
+  }
+
+  int bucketOf(int key)
+  {
+    return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+  }
+
+  public boolean insertOrDecrease(int v, int key)
+  {
+    boolean queued = contains(v);
+    if (queued && key >= keys[v])
+      return false;
+    if (key < 0)
+      throw new IllegalArgumentException("Negative key " + key);
+    // The buckets can be moved down while nothing else is queued
+    if (size == (queued ? 1 : 0))
+      last = Math.min(last, key);
+    else if (key < last)
+      throw new IllegalArgumentException("Key " + key
+                                         + " smaller than the last key polled "
+                                         + last);
+    if (queued)
+      buckets.remove(v);
+    else
+      size++;
+    keys[v] = key;
+    buckets.add(v, bucketOf(key));
+    return true;
+  }
+
+  public int poll()
+  {
+    if (buckets.head[0] < 0)
+    {
+      int b = 1;
+      while (buckets.head[b] < 0)
+        b++;
+      // Its smallest key becomes the last key, and the other keys of the
+      // bucket now differ from it in lower bits only
+      int min = Integer.MAX_VALUE;
+      for (int v = buckets.head[b]; v >= 0; v = buckets.next[v])
+        min = Math.min(min, keys[v]);
+      last = min;
+      while (buckets.head[b] >= 0)
+      {
+        int v = buckets.removeFirst(b);
+        buckets.add(v, bucketOf(keys[v]));
+      }
+    }
+    size--;
+    return buckets.removeFirst(0);
+  }
+
+  public void clear()
+  {
+    for (int b = 0; b < BUCKETS; b++)
+      buckets.clear(b);
+    size = 0;
+    last = 0;
+  }
+}
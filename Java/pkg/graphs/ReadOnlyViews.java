@@ -0,0 +1,503 @@
+package pkg.graphs;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// The collection types returned by Graph's list getters, made read-only.
+//
+// The getters are cached and shared by every caller, so a caller changing
+// one would corrupt what all the others see. Collections.unmodifiableList()
+// can't be used, as the getters return ArrayList, LinkedList and HashMap.
+// Instead these subclasses are filled once, then sealed, after which every
+// method that would change them (or their iterators and sub-views) throws
+// UnsupportedOperationException. Copies (new ArrayList<>(view), clone())
+// are ordinary modifiable collections.
+
+final class ReadOnlyViews
+{
+  private ReadOnlyViews()
+  {
+  }
+
+  static UnsupportedOperationException readOnly()
+  {
+    return new UnsupportedOperationException("Read-only view of a Graph, "
+                                             + "change the Graph instead");
+  }
+
+  // Iterator over a view, without remove, set and add
+  static class Iter<E> implements ListIterator<E>
+  {
+    final Iterator<E> it;
+
+    Iter(Iterator<E> i)
+    {
+      it = i;
+    }
+
+    public boolean hasNext()
+    {
+      return it.hasNext();
+    }
+
+    public E next()
+    {
+      return it.next();
+    }
+
+    public boolean hasPrevious()
+    {
+      return ((ListIterator<E>) it).hasPrevious();
+    }
+
+    public E previous()
+    {
+      return ((ListIterator<E>) it).previous();
+    }
+
+    public int nextIndex()
+    {
+      return ((ListIterator<E>) it).nextIndex();
+    }
+
+    public int previousIndex()
+    {
+      return ((ListIterator<E>) it).previousIndex();
+    }
+
+    public void remove()
+    {
+      throw readOnly();
+    }
+
+    public void set(E e)
+    {
+      throw readOnly();
+    }
+
+    public void add(E e)
+    {
+      throw readOnly();
+    }
+  }
+
+  static class ArrayListView<E> extends ArrayList<E>
+  {
+    private static final long serialVersionUID = 1L;
+    boolean sealed;
+
+    ArrayListView(int capacity)
+    {
+      super(capacity);
+    }
+
+    ArrayListView<E> seal()
+    {
+      sealed = true;
+      return this;
+    }
+
+    void check()
+    {
+      if (sealed)
+        throw readOnly();
+    }
+
+    public boolean add(E e)
+    {
+      check();
+      return super.add(e);
+    }
+
+    public void add(int index, E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean addAll(Collection<? extends E> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean addAll(int index, Collection<? extends E> c)
+    {
+      throw readOnly();
+    }
+
+    public E set(int index, E e)
+    {
+      throw readOnly();
+    }
+
+    public E remove(int index)
+    {
+      throw readOnly();
+    }
+
+    public boolean remove(Object o)
+    {
+      throw readOnly();
+    }
+
+    public boolean removeAll(Collection<?> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean retainAll(Collection<?> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean removeIf(Predicate<? super E> filter)
+    {
+      throw readOnly();
+    }
+
+    public void replaceAll(UnaryOperator<E> operator)
+    {
+      throw readOnly();
+    }
+
+    public void sort(Comparator<? super E> c)
+    {
+      throw readOnly();
+    }
+
+    public void clear()
+    {
+      throw readOnly();
+    }
+
+    public Iterator<E> iterator()
+    {
+      return new Iter<E>(super.listIterator(0));
+    }
+
+    public ListIterator<E> listIterator()
+    {
+      return new Iter<E>(super.listIterator(0));
+    }
+
+    public ListIterator<E> listIterator(int index)
+    {
+      return new Iter<E>(super.listIterator(index));
+    }
+
+    public List<E> subList(int from, int to)
+    {
+      return Collections.unmodifiableList(super.subList(from, to));
+    }
+
+    public Object clone()
+    {
+      return new ArrayList<E>(this);
+    }
+  }
+
+  static class LinkedListView<E> extends LinkedList<E>
+  {
+    private static final long serialVersionUID = 1L;
+    boolean sealed;
+
+    LinkedListView<E> seal()
+    {
+      sealed = true;
+      return this;
+    }
+
+    void check()
+    {
+      if (sealed)
+        throw readOnly();
+    }
+
+    public boolean add(E e)
+    {
+      check();
+      return super.add(e);
+    }
+
+    public void add(int index, E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean addAll(Collection<? extends E> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean addAll(int index, Collection<? extends E> c)
+    {
+      throw readOnly();
+    }
+
+    public void addFirst(E e)
+    {
+      throw readOnly();
+    }
+
+    public void addLast(E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean offer(E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean offerFirst(E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean offerLast(E e)
+    {
+      throw readOnly();
+    }
+
+    public void push(E e)
+    {
+      throw readOnly();
+    }
+
+    public E pop()
+    {
+      throw readOnly();
+    }
+
+    public E poll()
+    {
+      throw readOnly();
+    }
+
+    public E pollFirst()
+    {
+      throw readOnly();
+    }
+
+    public E pollLast()
+    {
+      throw readOnly();
+    }
+
+    public E remove()
+    {
+      throw readOnly();
+    }
+
+    public E remove(int index)
+    {
+      throw readOnly();
+    }
+
+    public boolean remove(Object o)
+    {
+      throw readOnly();
+    }
+
+    public E removeFirst()
+    {
+      throw readOnly();
+    }
+
+    public E removeLast()
+    {
+      throw readOnly();
+    }
+
+    public boolean removeFirstOccurrence(Object o)
+    {
+      throw readOnly();
+    }
+
+    public boolean removeLastOccurrence(Object o)
+    {
+      throw readOnly();
+    }
+
+    public E set(int index, E e)
+    {
+      throw readOnly();
+    }
+
+    public boolean removeAll(Collection<?> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean retainAll(Collection<?> c)
+    {
+      throw readOnly();
+    }
+
+    public boolean removeIf(Predicate<? super E> filter)
+    {
+      throw readOnly();
+    }
+
+    public void replaceAll(UnaryOperator<E> operator)
+    {
+      throw readOnly();
+    }
+
+    public void sort(Comparator<? super E> c)
+    {
+      throw readOnly();
+    }
+
+    public void clear()
+    {
+      throw readOnly();
+    }
+
+    public Iterator<E> iterator()
+    {
+      return new Iter<E>(super.listIterator(0));
+    }
+
+    public ListIterator<E> listIterator(int index)
+    {
+      return new Iter<E>(super.listIterator(index));
+    }
+
+    public Iterator<E> descendingIterator()
+    {
+      return new Iter<E>(super.descendingIterator());
+    }
+
+    public List<E> subList(int from, int to)
+    {
+      return Collections.unmodifiableList(super.subList(from, to));
+    }
+
+    public Object clone()
+    {
+      return new LinkedList<E>(this);
+    }
+  }
+
+  static class HashMapView<K, V> extends HashMap<K, V>
+  {
+    private static final long serialVersionUID = 1L;
+    boolean sealed;
+
+    HashMapView<K, V> seal()
+    {
+      sealed = true;
+      return this;
+    }
+
+    public V put(K key, V value)
+    {
+      if (sealed)
+        throw readOnly();
+      return super.put(key, value);
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m)
+    {
+      throw readOnly();
+    }
+
+    public V remove(Object key)
+    {
+      throw readOnly();
+    }
+
+    public boolean remove(Object key, Object value)
+    {
+      throw readOnly();
+    }
+
+    public void clear()
+    {
+      throw readOnly();
+    }
+
+    public V putIfAbsent(K key, V value)
+    {
+      throw readOnly();
+    }
+
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+      throw readOnly();
+    }
+
+    public V replace(K key, V value)
+    {
+      throw readOnly();
+    }
+
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function)
+    {
+      throw readOnly();
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> f)
+    {
+      throw readOnly();
+    }
+
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> f)
+    {
+      throw readOnly();
+    }
+
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> f)
+    {
+      throw readOnly();
+    }
+
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> f)
+    {
+      throw readOnly();
+    }
+
+    public Set<K> keySet()
+    {
+      return Collections.unmodifiableSet(super.keySet());
+    }
+
+    public Collection<V> values()
+    {
+      return Collections.unmodifiableCollection(super.values());
+    }
+
+    // Entries without setValue(). unmodifiableMap(this) can't be used, as it
+    // would call this method again.
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+      final Set<Map.Entry<K, V>> entries = super.entrySet();
+      return Collections.unmodifiableMap(new AbstractMap<K, V>()
+      {
+        public Set<Map.Entry<K, V>> entrySet()
+        {
+          return entries;
+        }
+      }).entrySet();
+    }
+
+    public Object clone()
+    {
+      return new HashMap<K, V>(this);
+    }
+  }
+}
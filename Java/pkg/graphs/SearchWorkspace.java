@@ -0,0 +1,152 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// Per query state of a graph search (distances, predecessors, settled flags,
+// a heap and a queue), allocated once and reused by every search.
+//
+// Clearing V entries before every query costs O(V) even when the query only
+// reaches a handful of vertices. Instead every entry is stamped with the
+// epoch of the search that wrote it, and reset() just starts a new epoch:
+// entries with an older stamp read as unreached. A search then costs
+// O(vertices it touches), and nothing is allocated between searches.
+// The stamps are only cleared for real once the epoch counter wraps around.
+//
+// A workspace belongs to one search at a time; give every thread its own.
+
+public class SearchWorkspace
+{
+  public static final int INF = Integer.MAX_VALUE;
+
+  final int[] dist, pred;
+  // Epoch in which dist/pred and the settled flag of a vertex were last set
+  final int[] stamp, settledStamp;
+  int epoch;
+  // Distance read for vertices not reached by the current search
+  int unreached = INF;
+
+  IndexedDaryHeap heap;
+  int[] queue;
+
+  public SearchWorkspace(int capacity)
+  {
+    dist = new int[capacity];
+    pred = new int[capacity];
+    stamp = new int[capacity];
+    settledStamp = new int[capacity];
+    epoch = 1;
+  }
+
+  public int capacity()
+  {
+    return dist.length;
+  }
+
+  // Starts a new search: every vertex is unreached and not settled
+  public void reset()
+  {
+    reset(INF);
+  }
+
+  // Same, with unreached vertices at the given distance, e.g. INF/2 for
+  // searches that add weights to it without checking
+  public void reset(int unreachedDistance)
+  {
+    if (epoch == Integer.MAX_VALUE)
+    {
+      Arrays.fill(stamp, 0);
+      Arrays.fill(settledStamp, 0);
+      epoch = 0;
+    }
+    epoch++;
+    unreached = unreachedDistance;
+    if (heap != null)
+      heap.clear();
+  }
+
+  public boolean isReached(int v)
+  {
+    return stamp[v] == epoch;
+  }
+
+  public int distance(int v)
+  {
+    return stamp[v] == epoch ? dist[v] : unreached;
+  }
+
+  // Predecessor of v on its shortest path, -1 for the source and unreached
+  // vertices
+  public int pred(int v)
+  {
+    return stamp[v] == epoch ? pred[v] : -1;
+  }
+
+  public void set(int v, int distance, int predecessor)
+  {
+    stamp[v] = epoch;
+    dist[v] = distance;
+    pred[v] = predecessor;
+  }
+
+  // Changes the distance of v, keeping its predecessor
+  public void setDistance(int v, int distance)
+  {
+    if (stamp[v] != epoch)
+    {
+      stamp[v] = epoch;
+      pred[v] = -1;
+    }
+    dist[v] = distance;
+  }
+
+  public boolean isSettled(int v)
+  {
+    return settledStamp[v] == epoch;
+  }
+
+  public void settle(int v)
+  {
+    settledStamp[v] = epoch;
+  }
+
+  // Clears the flag of v, for searches that use it for vertices being
+  // queued, such as label correcting ones
+  public void unsettle(int v)
+  {
+    settledStamp[v] = 0;
+  }
+
+  // Heap of the size of the workspace, empty at the start of every search
+  public IndexedDaryHeap heap()
+  {
+    if (heap == null)
+      heap = new IndexedDaryHeap(capacity());
+    return heap;
+  }
+
+  // Array for a FIFO queue in which every vertex is enqueued at most once
+  public int[] queue()
+  {
+    if (queue == null)
+      queue = new int[capacity()];
+    return queue;
+  }
+
+  // Distances of the vertices 0 .. n-1, as a new array
+  public int[] distances(int n)
+  {
+    int[] res = new int[n];
+    for (int v = 0; v < n; v++)
+      res[v] = distance(v);
+    return res;
+  }
+
+  // Predecessors of the vertices 0 .. n-1, as a new array
+  public int[] preds(int n)
+  {
+    int[] res = new int[n];
+    for (int v = 0; v < n; v++)
+      res[v] = pred(v);
+    return res;
+  }
+}
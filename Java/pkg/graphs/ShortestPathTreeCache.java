@@ -0,0 +1,269 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded cache of shortest path trees (distance and predecessor arrays),
+// keyed by source vertex, in front of a single source shortest path search.
+//
+// When a few sources account for most queries, their trees are computed once
+// and every later query from them is an array lookup. Trees are evicted in
+// least recently used order once they take more than the memory budget.
+//
+// Every tree is tagged with the Graph's version. Any change to the Graph
+// bumps the version, and the next lookup drops all trees of older versions,
+// so a stale tree is never returned.
+//
+// Lookups are safe from any number of threads. Trees are searched outside the
+// lock, so a slow miss doesn't block hits on other sources (two threads
+// missing on the same source may both search it). As Graph itself isn't
+// thread safe, changes to it must not run concurrently with lookups.
+
+public class ShortestPathTreeCache
+{
+  static final int INF = Integer.MAX_VALUE;
+
+  // Fills distance (INF if unreachable) and pred (-1 for the source and
+  // unreachable vertices) from src; called from several threads at once
+  public interface Solver
+  {
+    void solve(GraphView g, int src, int[] distance, int[] pred);
+  }
+
+  // Shortest paths from one source. Never changes once cached.
+  public static class Tree
+  {
+    final int source;
+    final long version;
+    final int[] distance, pred;
+
+    Tree(int src, long ver, int[] dist, int[] p)
+    {
+      source = src;
+      version = ver;
+      distance = dist;
+      pred = p;
+    }
+
+    public int getSource()
+    {
+      return source;
+    }
+
+    // Version of the Graph the tree was computed on
+    public long getVersion()
+    {
+      return version;
+    }
+
+    public int distance(int v)
+    {
+      return distance[v];
+    }
+
+    public int pred(int v)
+    {
+      return pred[v];
+    }
+
+    // Vertices from the source to v, empty if v isn't reachable
+    public int[] path(int v)
+    {
+      if (distance[v] == INF)
+        return new int[0];
+      int n = 1;
+      for (int u = v; pred[u] != -1; u = pred[u])
+        n++;
+      int[] res = new int[n];
+      for (int u = v; n > 0; u = pred[u])
+        res[--n] = u;
+      return res;
+    }
+
+    // Approximate heap footprint: two int arrays and the headers
+    long sizeInBytes()
+    {
+      return 8L * distance.length + 64;
+    }
+  }
+
+  final Graph g;
+  final long maxBytes;
+  final Solver solver;
+
+  // Guarded by this
+  final LinkedHashMap<Integer, Tree> trees;
+  long bytes, cachedVersion;
+  CSRGraph csr;
+
+  final LongAdder hits = new LongAdder(), misses = new LongAdder();
+  final LongAdder evictions = new LongAdder(), invalidations = new LongAdder();
+
+  // Caches Dijkstra trees, so weights must be non negative
+  public ShortestPathTreeCache(Graph g, long maxBytes)
+  {
+    this(g, maxBytes, null);
+  }
+
+  // A null solver stands for the default Dijkstra
+  public ShortestPathTreeCache(Graph g, long maxBytes, Solver solver)
+  {
+    if (maxBytes < 0)
+      throw new IllegalArgumentException("Negative memory budget " + maxBytes);
+    this.g = g;
+    this.maxBytes = maxBytes;
+    this.solver = solver == null ? this::dijkstras : solver;
+    // Iterates from the least recently used tree
+    trees = new LinkedHashMap<Integer, Tree>(16, 0.75f, true);
+    cachedVersion = -1;
+  }
+
+  // Shortest path tree from src on the current version of the Graph
+  public Tree get(int src)
+  {
+    if (src < 0 || src >= g.getVertices())
+      throw new IndexOutOfBoundsException("Source " + src + " in a graph of "
+                                          + g.getVertices() + " vertices");
+    long version;
+    CSRGraph view;
+    synchronized (this)
+    {
+      version = g.getVersion();
+      if (version != cachedVersion)
+      {
+        if (!trees.isEmpty())
+          invalidations.increment();
+        trees.clear();
+        bytes = 0;
+        cachedVersion = version;
+        csr = g.freeze();
+      }
+      Tree t = trees.get(src);
+      if (t != null)
+      {
+        hits.increment();
+        return t;
+      }
+      view = csr;
+    }
+    misses.increment();
+
+    int V = view.getVertices();
+    int[] distance = new int[V], pred = new int[V];
+    solver.solve(view, src, distance, pred);
+    Tree t = new Tree(src, version, distance, pred);
+
+    synchronized (this)
+    {
+      // Not cached if the Graph changed meanwhile, or if it can never fit
+      if (version == cachedVersion && t.sizeInBytes() <= maxBytes)
+      {
+        Tree old = trees.put(src, t);
+        if (old != null)
+          bytes -= old.sizeInBytes();
+        bytes += t.sizeInBytes();
+        evict();
+      }
+    }
+    return t;
+  }
+
+  public int distance(int src, int dest)
+  {
+    return get(src).distance(dest);
+  }
+
+  // Drops least recently used trees until the rest fit in the budget
+  void evict()
+  {
+    Iterator<Map.Entry<Integer, Tree>> it = trees.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext())
+    {
+      bytes -= it.next().getValue().sizeInBytes();
+      it.remove();
+      evictions.increment();
+    }
+  }
+
+  public synchronized void clear()
+  {
+    trees.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size()
+  {
+    return trees.size();
+  }
+
+  public synchronized long sizeInBytes()
+  {
+    return bytes;
+  }
+
+  public long getMaxBytes()
+  {
+    return maxBytes;
+  }
+
+  public long getHits()
+  {
+    return hits.sum();
+  }
+
+  public long getMisses()
+  {
+    return misses.sum();
+  }
+
+  // Trees dropped to stay within the budget
+  public long getEvictions()
+  {
+    return evictions.sum();
+  }
+
+  // Times the cache was emptied because the Graph changed
+  public long getInvalidations()
+  {
+    return invalidations.sum();
+  }
+
+  // The default solver. A miss allocates the tree's two arrays anyway, so
+  // the heap is allocated per search too rather than kept per thread, and
+  // is always sized for the current Graph.
+  void dijkstras(GraphView g, int src, int[] distance, int[] pred)
+  {
+    IndexedDaryHeap heap = new IndexedDaryHeap(g.getVertices());
+    Arrays.fill(distance, INF);
+    Arrays.fill(pred, -1);
+    NeighborCursor c = g.outCursor();
+
+    distance[src] = 0;
+    heap.insert(src, 0);
+    while (!heap.isEmpty())
+    {
+      int u = heap.poll();
+      c.reset(u);
+      while (c.next())
+      {
+        int nDist = distance[u] + c.weight();
+        if (nDist < distance[c.target()])
+        {
+          distance[c.target()] = nDist;
+          pred[c.target()] = u;
+          heap.insertOrDecrease(c.target(), nDist);
+        }
+      }
+    }
+  }
+
+  public String toString()
+  {
+    return "ShortestPathTreeCache: " + size() + " trees, " + sizeInBytes()
+           + " of " + maxBytes + " bytes, " + getHits() + " hits, "
+           + getMisses() + " misses, " + getEvictions() + " evictions";
+  }
+}
@@ -0,0 +1,325 @@
+package pkg.graphs;
+
+import java.util.Arrays;
+
+// A graph that keeps changing while readers query consistent versions of it.
+//
+// Writers add edges and publish() them as a new version. Readers take the
+// latest published version with snapshot() and run any GraphView algorithm
+// on it. A Snapshot never changes, so readers need no locks and never see a
+// half applied update, however long their query runs.
+//
+// A version is an immutable base CSRGraph plus a delta overlay of the edges
+// added since the base was built. The overlay is shared between versions:
+//  - Every vertex's added edges live in an append-only array. A version
+//    remembers how many entries of the array it owns, so later appends don't
+//    disturb it, and an array is only copied (by the writer) when it is full.
+//  - The per vertex arrays and counts are grouped in pages of PAGE_SIZE
+//    vertices. The writer copies a page the first time it changes it after a
+//    publish (copy-on-write), so publishing copies one reference per page
+//    instead of the whole graph.
+// When the overlay grows past a fraction of the base, publish() merges both
+// into a new base CSR, which keeps queries as fast as on a CSRGraph.
+
+public class VersionedGraph
+{
+  static final int PAGE_SHIFT = 10;
+  static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  static final int PAGE_MASK = PAGE_SIZE - 1;
+  // The overlay is merged into the base once it holds this share of entries
+  static final double COMPACT_RATIO = 0.25;
+
+  final int vertices;
+  final boolean isDirected, isWeighted;
+
+  // Writer state, guarded by this
+  CSRGraph base;
+  Page[] out, in;
+  // Pages changed since the last publish, owned by the writer
+  boolean[] outDirty, inDirty;
+  long edges, deltaEntries, version;
+
+  // Latest published version
+  volatile Snapshot current;
+
+  public VersionedGraph(int n, boolean dir, boolean wt)
+  {
+    this(new CSRGraph(n, 0, dir, wt, new int[n + 1], new int[0], new int[0]));
+  }
+
+  // Starts from the given graph as version 0
+  public VersionedGraph(CSRGraph initial)
+  {
+    vertices = initial.getVertices();
+    isDirected = initial.getIsDirected();
+    isWeighted = initial.getIsWeighted();
+    edges = initial.getEdges();
+    reset(initial);
+    current = new Snapshot(this);
+  }
+
+  // Starts over from a new base with an empty overlay
+  void reset(CSRGraph b)
+  {
+    base = b;
+    int pages = (vertices + PAGE_SIZE - 1) >> PAGE_SHIFT;
+    out = new Page[pages];
+    outDirty = new boolean[pages];
+    in = isDirected ? new Page[pages] : out;
+    inDirty = isDirected ? new boolean[pages] : outDirty;
+    deltaEntries = 0;
+  }
+
+  // Edges added to PAGE_SIZE vertices, beyond those in the base
+  static class Page
+  {
+    final int[][] targets, weights;
+    final int[] counts;
+
+    Page()
+    {
+      targets = new int[PAGE_SIZE][];
+      weights = new int[PAGE_SIZE][];
+      counts = new int[PAGE_SIZE];
+    }
+
+    Page(Page p)
+    {
+      targets = p.targets.clone();
+      weights = p.weights.clone();
+      counts = p.counts.clone();
+    }
+  }
+
+  public void addEdge(int src, int dest)
+  {
+    addEdge(src, dest, 1);
+  }
+
+  // Not visible to readers until the next publish()
+  public synchronized void addEdge(int src, int dest, int wt)
+  {
+    if (src < 0 || src >= vertices || dest < 0 || dest >= vertices)
+      throw new IndexOutOfBoundsException("Edge (" + src + ", " + dest
+                                          + ") in a graph of " + vertices
+                                          + " vertices");
+    if (!isWeighted)
+      wt = 1;
+    append(out, outDirty, src, dest, wt);
+    if (isDirected)
+      append(in, inDirty, dest, src, wt);
+    else
+      append(out, outDirty, dest, src, wt);
+    edges++;
+  }
+
+  void append(Page[] pages, boolean[] dirty, int v, int x, int wt)
+  {
+    int p = v >> PAGE_SHIFT, i = v & PAGE_MASK;
+    // A published page is shared with readers, so change a copy of it
+    if (pages[p] == null)
+      pages[p] = new Page();
+    else if (!dirty[p])
+      pages[p] = new Page(pages[p]);
+    dirty[p] = true;
+
+    Page page = pages[p];
+    int n = page.counts[i];
+    // Slots beyond the published counts belong to the writer, so appending
+    // in place is safe; a full array is replaced by a larger copy and the
+    // old one is left to the versions that still use it.
+    if (page.targets[i] == null)
+    {
+      page.targets[i] = new int[4];
+      page.weights[i] = new int[4];
+    }
+    else if (n == page.targets[i].length)
+    {
+      page.targets[i] = Arrays.copyOf(page.targets[i], 2 * n);
+      page.weights[i] = Arrays.copyOf(page.weights[i], 2 * n);
+    }
+    page.targets[i][n] = x;
+    page.weights[i][n] = wt;
+    page.counts[i] = n + 1;
+    deltaEntries++;
+  }
+
+  // Makes all edges added so far visible to new snapshots and returns the
+  // new version
+  public synchronized Snapshot publish()
+  {
+    long baseEntries = base.getOffsets()[vertices];
+    if (deltaEntries > Math.max(PAGE_SIZE, COMPACT_RATIO * baseEntries))
+      compact();
+    Arrays.fill(outDirty, false);
+    Arrays.fill(inDirty, false);
+    version++;
+    current = new Snapshot(this);
+    return current;
+  }
+
+  // Merges the overlay into a new base CSR
+  void compact()
+  {
+    Snapshot s = new Snapshot(this);
+    NeighborCursor c = s.outCursor();
+    int[] offsets = new int[vertices + 1];
+    for (int v = 0; v < vertices; v++)
+    {
+      long n = (long) offsets[v] + base.outDegree(v) + s.count(s.out, v);
+      if (n > Integer.MAX_VALUE - 8)
+        throw new IllegalStateException("Too many adjascency entries for CSR");
+      offsets[v + 1] = (int) n;
+    }
+    int[] targets = new int[offsets[vertices]];
+    int[] weights = new int[offsets[vertices]];
+    for (int v = 0; v < vertices; v++)
+    {
+      int k = offsets[v];
+      c.reset(v);
+      while (c.next())
+      {
+        targets[k] = c.target();
+        weights[k] = c.weight();
+        k++;
+      }
+    }
+    if (edges > Integer.MAX_VALUE)
+      throw new IllegalStateException("Too many edges for CSR");
+    reset(new CSRGraph(vertices, (int) edges, isDirected, isWeighted,
+                       offsets, targets, weights));
+  }
+
+  // The latest published version. Cheap, lock free and safe to call from any
+  // thread.
+  public Snapshot snapshot()
+  {
+    return current;
+  }
+
+  // One immutable version of the graph
+  public static class Snapshot implements GraphView
+  {
+    final int vertices;
+    final boolean isDirected, isWeighted;
+    final long edges, version;
+    final CSRGraph base;
+    // Copies of the page tables; the pages themselves are never changed
+    // after being published
+    final Page[] out, in;
+
+    Snapshot(VersionedGraph g)
+    {
+      vertices = g.vertices;
+      isDirected = g.isDirected;
+      isWeighted = g.isWeighted;
+      edges = g.edges;
+      version = g.version;
+      base = g.base;
+      out = g.out.clone();
+      in = g.isDirected ? g.in.clone() : out;
+    }
+
+    public long getVersion()
+    {
+      return version;
+    }
+
+    public int getVertices()
+    {
+      return vertices;
+    }
+
+    public long getEdgeCount()
+    {
+      return edges;
+    }
+
+    public boolean getIsDirected()
+    {
+      return isDirected;
+    }
+
+    public boolean getIsWeighted()
+    {
+      return isWeighted;
+    }
+
+    int count(Page[] pages, int v)
+    {
+      Page p = pages[v >> PAGE_SHIFT];
+      return p == null ? 0 : p.counts[v & PAGE_MASK];
+    }
+
+    public NeighborCursor outCursor()
+    {
+      return new Cursor(base.getOffsets(), base.getTargets(),
+                        base.getWeights(), out);
+    }
+
+    public NeighborCursor inCursor()
+    {
+      return new Cursor(base.getInOffsets(), base.getInSources(),
+                        base.getInWeights(), in);
+    }
+  }
+
+  // Walks the base CSR slice of a vertex, then its overlay entries
+  static class Cursor implements NeighborCursor
+  {
+    final int[] offsets, targets, weights;
+    final Page[] pages;
+    // The arrays being walked, and the overlay arrays walked after them
+    int[] curTargets, curWeights, nextTargets, nextWeights;
+    int i, end, deltaEnd;
+
+    Cursor(int[] off, int[] tgt, int[] wts, Page[] p)
+    {
+      offsets = off;
+      targets = tgt;
+      weights = wts;
+      pages = p;
+    }
+
+    public void reset(int v)
+    {
+      curTargets = targets;
+      curWeights = weights;
+      i = offsets[v] - 1;
+      end = offsets[v + 1];
+      Page p = pages[v >> PAGE_SHIFT];
+      deltaEnd = 0;
+      if (p != null && p.counts[v & PAGE_MASK] > 0)
+      {
+        deltaEnd = p.counts[v & PAGE_MASK];
+        nextTargets = p.targets[v & PAGE_MASK];
+        nextWeights = p.weights[v & PAGE_MASK];
+      }
+    }
+
+    public boolean next()
+    {
+      if (++i < end)
+        return true;
+      if (deltaEnd == 0)
+        return false;
+      // Move on to the overlay
+      curTargets = nextTargets;
+      curWeights = nextWeights;
+      i = 0;
+      end = deltaEnd;
+      deltaEnd = 0;
+      return true;
+    }
+
+    public int target()
+    {
+      return curTargets[i];
+    }
+
+    public int weight()
+    {
+      return curWeights[i];
+    }
+  }
+}